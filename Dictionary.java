@@ -6,13 +6,22 @@ import java.io.IOException;
 import java.io.FileNotFoundException;
 
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import java.nio.ByteBuffer;
+
 final class Dictionary {
   private static final String EXTENSION = ".dic";
 
@@ -124,6 +133,16 @@ final class Dictionary {
   // ユーザー定義
   public static final int MASK_USER                  = 0x80000000;
 
+  // 検索の種類
+  public static final int STRICT   = 0; // 押韻
+  public static final int HEAD     = 1; // 頭韻
+  public static final int TAIL     = 2; // 脚韻
+  public static final int INTERNAL = 3; // 中間韻
+  public static final int ALIGN    = 4; // 半韻 (長さの違いを許す)
+
+  // 半韻で上限を指定しなかったときの費用の上限 (モーラ二つの挿入・削除まで)
+  public static final int ALIGN_DISTANCE = 2 * Word.GAP;
+
   // 全て
   public static final int MASK_ALL                   = MASK_NOUM
                                                      | MASK_VERB
@@ -132,108 +151,535 @@ final class Dictionary {
                                                      | MASK_ADNOMINAL
                                                      | MASK_USER;
 
-  private final Word[] words;
-  private final Trie   head;
+  // 辞書を分ける単位。検索に使わない品詞のまとまりは読み込まない。
+  // ユーザー定義 (MASK_USER) は実行中に変えられるよう、別に UserPartition で持つ。
+  static final int[] PARTITIONS = {
+    MASK_NOUM,
+    MASK_VERB,
+    MASK_ADJECTIVE,
+    MASK_ADVERB,
+    MASK_ADNOMINAL,
+  };
+
+  // 除くモーラの指定がないとき
+  private static final short[] NO_MORA = new short[0];
+
+  private final Builder builder;
+  private final AtomicReferenceArray<Partition> partitions = new AtomicReferenceArray<Partition>(PARTITIONS.length);
+  private volatile UserPartition user;
+  private final QueryCache cache;
+
+  // 変換済みの辞書 (Snapshot) の中身。開けるまで読み込むたびに開こうとし、各分割はその複製から読む。
+  // 全て読み込んだら手放す。partitions で排他する。
+  private ByteBuffer snapshot;
+
+  private Dictionary(final Builder builder) {
+    this.builder = builder;
+    this.cache   = new QueryCache(builder.cacheEntries, builder.cacheWeight);
+  }
+
+  // i 番目の分割を返す。初めて使うときに読み込む。
+  // 読み込みは検索が取り消されてもやめず、作り終えてから取り消しを確かめる。
+  // やめると次の検索がまた初めから読み込むので、打ち続けている間いつまでも読み終わらない。
+  private Partition partition(final int i) {
+    Partition partition = partitions.get(i);
+    if (partition == null) {
+      synchronized (partitions) {
+        partition = partitions.get(i);
+        if (partition == null) {
+          final boolean interrupted = Thread.interrupted();
+          try {
+            partition = builder.load(PARTITIONS[i], this.snapshot());
+            partitions.set(i, partition);
+            this.release();
+          } finally {
+            if (interrupted) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        }
+      }
+      Dictionary.checkInterrupted();
+    }
+    return partition;
+  }
+
+  // ユーザー定義の単語を返す。初めて使うときに読み込む。
+  private UserPartition user() {
+    UserPartition user = this.user;
+    if (user == null) {
+      synchronized (partitions) {
+        user = this.user;
+        if (user == null) {
+          final boolean interrupted = Thread.interrupted();
+          try {
+            this.user = user = builder.loadUser(this.snapshot());
+            this.release();
+          } finally {
+            if (interrupted) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        }
+      }
+    }
+    return user;
+  }
+
+  // 変換済みの辞書を開く (無ければ null)。partitions を持って呼ぶ。
+  // 開けなかったときは覚えておかず、次に読み込むときにまた開こうとする。
+  private ByteBuffer snapshot() {
+    if (snapshot == null) {
+      snapshot = Snapshot.open(Dictionary.class.getResource("dic/" + Snapshot.NAME));
+    }
+    return snapshot;
+  }
+
+  // 全ての分割を読み込んだら変換済みの辞書を手放す。partitions を持って呼ぶ。
+  private void release() {
+    if (user == null) {
+      return;
+    }
+    for (int i = 0, size = partitions.length(); i < size; ++i) {
+      if (partitions.get(i) == null) {
+        return;
+      }
+    }
+    snapshot = null;
+  }
+
+  // i 番目の品詞の辞書ファイル。無ければ null を返す。
+  static URL source(final int i) {
+    return Dictionary.class.getResource("dic/" + NAMES[i] + EXTENSION);
+  }
+
+  /**
+   * ユーザー定義の単語を加える。同じ読みと表記の単語が既にあれば何もせず false を返す。
+   * 加えた単語は次の検索から見え、検索中のものには影響しない。
+   * 読みに対応していない文字があれば IllegalArgumentException を投げる。
+   */
+  public boolean add(final String kana, final String words) {
+    final boolean added = this.user().add(new Word(MASK_USER, kana, words));
+    if (added) {
+      cache.invalidate(MASK_USER);
+    }
+    return added;
+  }
+
+  /**
+   * 読みと表記が同じユーザー定義の単語を除く。無ければ false を返す。
+   */
+  public boolean remove(final String kana, final String words) {
+    final boolean removed = this.user().remove(new Word(MASK_USER, kana, words));
+    if (removed) {
+      cache.invalidate(MASK_USER);
+    }
+    return removed;
+  }
+
+  /**
+   * 検索結果のキャッシュ。当たり・外れ・追い出しの回数を見たり、捨てたりするのに使う。
+   */
+  public QueryCache getCache() {
+    return cache;
+  }
+
+  // 別のスレッドで作ったものを受け取る。そこで生じた例外はそのまま投げ直す。
+  // 割り込まれても作り終えるまで待ち、割り込まれたことは戻ってから伝える (読み込みを取り消しで捨てない)。
+  static <T> T get(final Future<T> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (final InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * 検索しているスレッドが割り込まれていたら (RhymeEngine.Search.cancel) CancellationException を投げる。
+   * 木を辿る途中で呼び、取り消された検索がそれ以上 CPU を使わないようにする。
+   */
+  static void checkInterrupted() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("検索が取り消されました");
+    }
+  }
+
+  /**
+   * 入力に合わせて問い合わせを少しずつ変える検索。
+   * 分割ごとに Trie.Cursor を持つので、push と pop は木の一段分しか辿らず、rank は前線から先だけを辿る。
+   * 脚韻 (TAIL) では push は問い合わせの先頭にモーラを加える。
+   * rank の結果は同じ問い合わせの Dictionary.rank と同じで、キャッシュも共有する。
+   * 一つのスレッドからだけ使う。
+   */
+  public static final class Cursor {
+    private final Dictionary    dictionary;
+    private final int           mode;
+    private final int           mask;
+    private final long[]        set;
+    private final Trie.Cursor[] cursors; // mask に含まれない分割は null
+
+    private short[] moras  = new short[8]; // push した順のモーラ
+    private int     length = 0;
+
+    private Cursor(final Dictionary dictionary, final int mode, final int mask, final long[] set) {
+      if ((mode != STRICT) && (mode != HEAD) && (mode != TAIL)) {
+        throw new IllegalArgumentException("mode: " + mode);
+      }
+      this.dictionary = dictionary;
+      this.mode       = mode;
+      this.mask       = mask;
+      this.set        = set;
+      this.cursors    = new Trie.Cursor[PARTITIONS.length];
+      for (int i = 0, size = PARTITIONS.length; i < size; ++i) {
+        if ((PARTITIONS[i] & mask) != 0) {
+          cursors[i] = dictionary.partition(i).cursor(mode, mask, set);
+        }
+      }
+    }
+
+    public int length() {
+      return length;
+    }
+
+    // 今の問い合わせ (脚韻でも問い合わせの順に並べる)
+    public short[] query() {
+      final short[] query = Arrays.copyOf(moras, length);
+      if (mode == TAIL) {
+        for (int i = 0, j = length - 1; i < j; ++i, --j) {
+          final short t = query[i];
+          query[i] = query[j];
+          query[j] = t;
+        }
+      }
+      return query;
+    }
+
+    // 問い合わせにモーラを一つ加える (脚韻では先頭に、それ以外では末尾に)
+    public void push(final short mora) {
+      if (length >= moras.length) {
+        moras = Arrays.copyOf(moras, moras.length * 2);
+      }
+      moras[length++] = mora;
+      for (final Trie.Cursor cursor : cursors) {
+        if (cursor != null) {
+          cursor.push(mora);
+        }
+      }
+    }
+
+    // 最後に加えたモーラを取り除く
+    public void pop() {
+      if (length <= 0) {
+        throw new IllegalStateException("問い合わせが空です");
+      }
+      --length;
+      for (final Trie.Cursor cursor : cursors) {
+        if (cursor != null) {
+          cursor.pop();
+        }
+      }
+    }
 
-  private Dictionary(final Word[] words) {
-    this.words = words;
-    Arrays.sort(words);
-    this.head = new Trie.Builder().build(words);
+    /**
+     * 今の問い合わせの検索結果。ユーザー定義の単語は小さいので、毎回 UserPartition で検索し直す。
+     */
+    public Ranking rank() {
+      final long start = Metrics.start();
+      final short[] query = this.query();
+      final QueryCache cache = dictionary.cache;
+      final QueryCache.Key key = QueryCache.key(mode, query, mask, set, QueryCache.UNBOUNDED, 0);
+      Ranking ranking = cache.get(key);
+      if (ranking == null) {
+        final long generation = cache.generation();
+        final List<Ranking.Part> parts = new ArrayList<Ranking.Part>();
+        for (int i = 0, size = cursors.length; i < size; ++i) {
+          if (cursors[i] != null) {
+            parts.add(dictionary.partition(i).rank(cursors[i]));
+          }
+        }
+        if ((mask & MASK_USER) != 0) {
+          parts.add(dictionary.user().rank(mode, query, set));
+        }
+        ranking = new Ranking(mode, 0, parts.toArray(new Ranking.Part[parts.size()]));
+        cache.put(key, ranking, generation);
+      }
+      Metrics.INSTANCE.query(mode, start, ranking.size());
+      return ranking;
+    }
   }
 
   public static final class Builder {
+    private int cacheEntries = QueryCache.DEFAULT_ENTRIES;
+    private int cacheWeight  = QueryCache.DEFAULT_WEIGHT;
+
+    /**
+     * 検索結果のキャッシュの大きさ (QueryCache を参照)。maxEntries が 0 ならキャッシュしない。
+     */
+    public Builder cache(final int maxEntries, final int maxWeight) {
+      this.cacheEntries = maxEntries;
+      this.cacheWeight  = maxWeight;
+      return this;
+    }
+
+    // 辞書はここでは読まず、品詞のまとまりごとに初めて検索するときに読む
     public Dictionary build() {
-      final List<Word> words = new ArrayList<Word>();
+      return new Dictionary(this);
+    }
 
+    // 品詞が mask に含まれる単語を読み込み、分割を作る。snapshot は変換済みの辞書 (無ければ null)。
+    private Partition load(final int mask, final ByteBuffer snapshot) {
+      final long start = Metrics.start();
+      final ExecutorService exec = Builder.newExecutor();
+      try {
+        // 事前に変換した辞書があればそれを使い、なければテキストの辞書を読む
+        final Partition partition = Snapshot.load(snapshot, mask, exec);
+        if (partition != null) {
+          return partition;
+        }
+        return new Partition(this.parse(mask, exec), exec);
+      } finally {
+        exec.shutdown();
+        Metrics.INSTANCE.load(start);
+      }
+    }
+
+    // ユーザー定義の単語を読み込む
+    private UserPartition loadUser(final ByteBuffer snapshot) {
+      final long start = Metrics.start();
+      Word[] words = Snapshot.loadWords(snapshot, MASK_USER);
+      if (words == null) {
+        final List<Word> list = Builder.parse(Integer.numberOfTrailingZeros(MASK_USER));
+        words = list.toArray(new Word[list.size()]);
+      }
+      final UserPartition user = new UserPartition(words);
+      Metrics.INSTANCE.load(start);
+      return user;
+    }
+
+    // テキストの辞書ファイルを全て読む
+    public Word[] parse() {
+      final ExecutorService exec = Builder.newExecutor();
+      try {
+        return this.parse(MASK_ALL, exec);
+      } finally {
+        exec.shutdown();
+      }
+    }
+
+    // 品詞が mask に含まれる辞書ファイルを別々のスレッドで読み、品詞の順につなげる
+    private Word[] parse(final int mask, final ExecutorService exec) {
+      final List<Future<List<Word>>> futures = new ArrayList<Future<List<Word>>>();
       for (int i = 0, size = Dictionary.NAMES.length; i < size; ++i) {
-        final URL dictionary = Dictionary.class.getResource("dic/" + Dictionary.NAMES[i] + Dictionary.EXTENSION);
+        if (((1 << i) & mask) == 0) {
+          continue;
+        }
+        final int index = i;
+        futures.add(exec.submit(new Callable<List<Word>>() {
+          @Override
+          public List<Word> call() {
+            return Builder.parse(index);
+          }
+        }));
+      }
+
+      final List<Word> words = new ArrayList<Word>();
+      for (final Future<List<Word>> future : futures) {
+        words.addAll(Dictionary.get(future));
+      }
+      return words.toArray(new Word[words.size()]);
+    }
+
+    private static List<Word> parse(final int i) {
+      final List<Word> words = new ArrayList<Word>();
 
-        final Map<String, String> map = new HashMap<String, String>();
+      final URL dictionary = Dictionary.source(i);
+      if (dictionary == null) {
+        // ユーザー定義のように辞書ファイルのない品詞もある
+        return words;
+      }
+
+      final Map<String, String> map = new HashMap<String, String>();
+      try {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(dictionary.openStream(), "UTF-8"));
         try {
-          final BufferedReader in = new BufferedReader(new InputStreamReader(dictionary.openStream()));
-          try {
-            String line;
-            for (int ln = 1; (line = in.readLine()) != null; ++ln) {
-              line = line.trim();
-              if (line.isEmpty()) {
-                continue;
-              }
-              final String[] entry = line.split("\\s");
-              if (entry.length != 2) {
-                System.err.printf("%s(%d): %s\n", dictionary.getFile(), ln, line);
-                continue;
-              }
-              final String kana  = entry[0];
-              final String kanji = entry[1];
-              {
-                final String value = map.get(kana);
-                if (value == null) {
-                  map.put(kana, kanji);
-                } else {
-                  map.put(kana, value + "、" + kanji);
-                }
+          String line;
+          for (int ln = 1; (line = in.readLine()) != null; ++ln) {
+            line = line.trim();
+            if (line.isEmpty()) {
+              continue;
+            }
+            final String[] entry = line.split("\\s");
+            if (entry.length != 2) {
+              System.err.printf("%s(%d): %s\n", dictionary.getFile(), ln, line);
+              continue;
+            }
+            final String kana  = entry[0];
+            final String kanji = entry[1];
+            {
+              final String value = map.get(kana);
+              if (value == null) {
+                map.put(kana, kanji);
+              } else {
+                map.put(kana, value + "、" + kanji);
               }
             }
-          } catch (final IOException e) {
-          } finally {
-            in.close();
           }
-        } catch (final FileNotFoundException e) {
-          System.err.printf("辞書ファイルを開けませんでした: %s\n", dictionary.getFile());
         } catch (final IOException e) {
-          // in.close() で例外が生じても無視する。
         } finally {
-          final int feature = 1 << i;
-          for (final Map.Entry<String, String> e : map.entrySet()) {
+          in.close();
+        }
+      } catch (final FileNotFoundException e) {
+        System.err.printf("辞書ファイルを開けませんでした: %s\n", dictionary.getFile());
+      } catch (final IOException e) {
+        // in.close() で例外が生じても無視する。
+      } finally {
+        final int feature = 1 << i;
+        for (final Map.Entry<String, String> e : map.entrySet()) {
+          try {
             words.add(new Word(feature, e.getKey(), e.getValue()));
+          } catch (final IllegalArgumentException ex) {
+            System.err.printf("%s: %s\n", dictionary.getFile(), ex.getMessage());
           }
         }
       }
+      return words;
+    }
 
-      return new Dictionary(words.toArray(new Word[words.size()]));
+    private static ExecutorService newExecutor() {
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
   }
 
-  public Word[] match(final Mora[] query) {
-    final Word[] words = head.match(query);
-    Arrays.sort(words, new Comparator<Word>() {
-      @Override
-      public int compare(final Word w1, final Word w2) {
-        return w1.distance(query) - w2.distance(query);
-      }
-    });
-    return words;
+  public Word[] match(final short[] query) {
+    return this.rank(STRICT, query).toArray();
   }
 
-  public Word[] matchPrefix(final Mora[] query) {
-    final Word[] words = head.matchHead(query);
-    Arrays.sort(words, new Comparator<Word>() {
-      @Override
-      public int compare(final Word w1, final Word w2) {
-        return w1.distanceHead(query) - w2.distanceHead(query);
-      }
-    });
-    return words;
+  public Word[] matchPrefix(final short[] query) {
+    return this.rank(HEAD, query).toArray();
+  }
+
+  public Word[] matchPostfix(final short[] query) {
+    return this.rank(TAIL, query).toArray();
+  }
+
+  public Word[] matchInternal(final short[] query) {
+    return this.rank(INTERNAL, query).toArray();
+  }
+
+  /**
+   * 検索結果を距離の昇順に返す。距離が等しいものは母音列の順に並ぶ。
+   * 必要な分だけ Ranking.page で取り出せば、上位 offset + limit 個しか並べ替えない。
+   */
+  public Ranking rank(final int mode, final short[] query) {
+    return this.rank(mode, query, MASK_ALL);
+  }
+
+  /**
+   * 品詞が mask に含まれる単語だけを検索する。
+   * mask に含まれない品詞のまとまりは読み込みも検索もしない。
+   */
+  public Ranking rank(final int mode, final short[] query, final int mask) {
+    return this.rank(mode, query, mask, NO_MORA);
   }
 
-  public Word[] matchPostfix(final Mora[] query) {
-    final Word[] words = head.matchTail(query);
-    Arrays.sort(words, new Comparator<Word>() {
-      @Override
-      public int compare(final Word w1, final Word w2) {
-        return w1.distanceTail(query) - w2.distanceTail(query);
+  /**
+   * さらに blacklist のモーラ (Word.contains) を一つでも含む単語を除く。
+   * 除かれる単語は木を辿る途中で枝ごと落とすので、結果には載らない。
+   */
+  public Ranking rank(final int mode, final short[] query, final int mask, final short[] blacklist) {
+    final long start = Metrics.start();
+    final long[] set = Mora.set(blacklist);
+    final QueryCache.Key key = QueryCache.key(mode, query, mask, set, QueryCache.UNBOUNDED, 0);
+    Ranking ranking = cache.get(key);
+    if (ranking == null) {
+      final long generation = cache.generation();
+      ranking = this.search(mode, query, mask, set);
+      cache.put(key, ranking, generation);
+    }
+    Metrics.INSTANCE.query(mode, start, ranking.size());
+    return ranking;
+  }
+
+  private Ranking search(final int mode, final short[] query, final int mask, final long[] set) {
+    final List<Ranking.Part> parts = new ArrayList<Ranking.Part>();
+    for (int i = 0, size = PARTITIONS.length; i < size; ++i) {
+      if ((PARTITIONS[i] & mask) != 0) {
+        parts.add(this.partition(i).rank(mode, query, mask, set));
       }
-    });
-    return words;
+    }
+    if ((mask & MASK_USER) != 0) {
+      parts.add(this.user().rank(mode, query, set));
+    }
+    return new Ranking(mode, 0, parts.toArray(new Ranking.Part[parts.size()]));
+  }
+
+  /**
+   * 問い合わせを一モーラずつ伸ばしたり縮めたりしながら検索するカーソル (Cursor を参照)。
+   * 押韻・頭韻・脚韻だけに使える。
+   */
+  public Cursor cursor(final int mode, final int mask, final short[] blacklist) {
+    return new Cursor(this, mode, mask, Mora.set(blacklist));
+  }
+
+  /**
+   * 子音の距離の和が maxDistance 以下のものだけを、距離の小さいほうから高々 limit 個返す
+   * (limit が 0 以下なら個数は制限しない)。
+   * 近いものしか要らない問い合わせでは、遠い部分木を辿らずに済む。
+   * 半韻では maxDistance は整列の費用 (Word.distanceAlign) の上限になる。
+   * 中間韻には距離がないので、maxDistance と limit は使わない。
+   */
+  public Ranking rank(final int mode, final short[] query, final int maxDistance, final int limit) {
+    return this.rank(mode, query, MASK_ALL, NO_MORA, maxDistance, limit);
+  }
+
+  public Ranking rank(final int mode, final short[] query, final int mask, final int maxDistance, final int limit) {
+    return this.rank(mode, query, mask, NO_MORA, maxDistance, limit);
   }
 
-  public Word[] matchInternal(final Mora[] query) {
-    final List<Word> list = new ArrayList<Word>();
-    for (final Word word : words) {
-      if (word.matchInternal(query)) {
-        list.add(word);
+  public Ranking rank(final int mode, final short[] query, final int mask, final short[] blacklist,
+      final int maxDistance, final int limit) {
+    final long start = Metrics.start();
+    final long[] set = Mora.set(blacklist);
+    final QueryCache.Key key = QueryCache.key(mode, query, mask, set, maxDistance, limit);
+    Ranking ranking = cache.get(key);
+    if (ranking == null) {
+      final long generation = cache.generation();
+      ranking = this.search(mode, query, mask, set, maxDistance, limit);
+      cache.put(key, ranking, generation);
+    }
+    Metrics.INSTANCE.query(mode, start, ranking.size());
+    return ranking;
+  }
+
+  private Ranking search(final int mode, final short[] query, final int mask, final long[] set,
+      final int maxDistance, final int limit) {
+    final List<Ranking.Part> parts = new ArrayList<Ranking.Part>();
+    for (int i = 0, size = PARTITIONS.length; i < size; ++i) {
+      if ((PARTITIONS[i] & mask) != 0) {
+        parts.add(this.partition(i).rank(mode, query, mask, set, maxDistance, limit));
       }
     }
-    return list.toArray(new Word[list.size()]);
+    if ((mask & MASK_USER) != 0) {
+      parts.add(this.user().rank(mode, query, set, maxDistance, limit));
+    }
+    return new Ranking(mode, (mode == INTERNAL) ? 0 : limit, parts.toArray(new Ranking.Part[parts.size()]));
   }
 }
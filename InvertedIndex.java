@@ -0,0 +1,205 @@
+import java.util.Arrays;
+
+/**
+ * モーラから単語の番号と出現位置を引く転置索引。
+ * 中間韻 (Word.matchInternal) の候補を絞り込むのに使う。
+ */
+final class InvertedIndex {
+  // 索引の鍵は三種類ある。
+  //   子音と母音の組 / 母音だけ / 子音だけ
+  private static final int FULL      = 0;
+  private static final int VOWEL     = FULL  + Mora.KEY_MASK + 1;
+  private static final int CONSONANT = VOWEL + Mora.VOWEL_COUNT;
+  private static final int KEYS      = CONSONANT + Mora.CONSONANT_COUNT;
+
+  // 出現は (番号 << POSITION_BITS) | 位置 の形で持つ。
+  // 位置が収まらない長い単語は索引に載せず、常に候補とする。
+  private static final int POSITION_BITS = 8;
+  private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+
+  private final int[][] postings;
+  private final int[]   lengths;
+  private final int[]   longWords;
+
+  public InvertedIndex(final Word[] words) {
+    this.lengths = new int[words.length];
+
+    final int[] counts = new int[KEYS];
+    int longCount = 0;
+    for (int id = 0, size = words.length; id < size; ++id) {
+      final short[] mora = words[id].getMora();
+      lengths[id] = mora.length;
+      if (mora.length > POSITION_MASK) {
+        ++longCount;
+        continue;
+      }
+      for (final short m : mora) {
+        ++counts[FULL      + (m & Mora.KEY_MASK)];
+        ++counts[VOWEL     + Mora.vowel(m)];
+        ++counts[CONSONANT + Mora.consonant(m)];
+      }
+    }
+
+    this.postings  = new int[KEYS][];
+    this.longWords = new int[longCount];
+    for (int key = 0; key < KEYS; ++key) {
+      postings[key] = new int[counts[key]];
+    }
+
+    final int[] fill = new int[KEYS];
+    longCount = 0;
+    for (int id = 0, size = words.length; id < size; ++id) {
+      final short[] mora = words[id].getMora();
+      if (mora.length > POSITION_MASK) {
+        longWords[longCount++] = id;
+        continue;
+      }
+      for (int i = 0, length = mora.length; i < length; ++i) {
+        final int entry = (id << POSITION_BITS) | i;
+        final short m = mora[i];
+        InvertedIndex.add(postings, fill, FULL      + (m & Mora.KEY_MASK), entry);
+        InvertedIndex.add(postings, fill, VOWEL     + Mora.vowel(m)      , entry);
+        InvertedIndex.add(postings, fill, CONSONANT + Mora.consonant(m)  , entry);
+      }
+    }
+  }
+
+  private static void add(final int[][] postings, final int[] fill, final int key, final int entry) {
+    postings[key][fill[key]++] = entry;
+  }
+
+  private static int key(final short mora) {
+    final int c = Mora.consonant(mora);
+    final int v = Mora.vowel(mora);
+    if ((c != Mora.CONSONANT_ANY) && (v != Mora.VOWEL_ANY)) {
+      return FULL + (mora & Mora.KEY_MASK);
+    } else if (v != Mora.VOWEL_ANY) {
+      return VOWEL + v;
+    } else if (c != Mora.CONSONANT_ANY) {
+      return CONSONANT + c;
+    } else {
+      return -1;
+    }
+  }
+
+  /**
+   * query より長く、query を (飛び飛びの) 部分列として含む単語の番号を昇順に返す。
+   * 戻り値は Word.matchInternal の候補であり、最終的な判定は呼び出し側で行う。
+   */
+  public int[] candidates(final short[] query) {
+    final int length = query.length;
+
+    // 任意のモーラ以外について、問い合わせ中の位置と出現の一覧を集める。
+    int count = 0;
+    final int[]   position = new int  [length];
+    final int[][] lists    = new int  [length][];
+    for (int j = 0; j < length; ++j) {
+      final int key = InvertedIndex.key(query[j]);
+      if (key >= 0) {
+        position[count] = j;
+        lists   [count] = postings[key];
+        ++count;
+      }
+    }
+
+    final int[] result = new int[lengths.length];
+    int size = 0;
+    if (count <= 0) {
+      // 絞り込めないので長さだけで選ぶ
+      for (int id = 0, total = lengths.length; id < total; ++id) {
+        if (lengths[id] > length) {
+          result[size++] = id;
+        }
+      }
+      return Arrays.copyOf(result, size);
+    }
+
+    // 最も短い一覧を走査し、残りの一覧は二分探索で追いかける。
+    int rarest = 0;
+    for (int k = 1; k < count; ++k) {
+      if (lists[k].length < lists[rarest].length) {
+        rarest = k;
+      }
+    }
+
+    final int[] cursor = new int[count];
+    final int[] source = lists[rarest];
+    for (int p = 0, total = source.length; p < total; ) {
+      final int id = source[p] >>> POSITION_BITS;
+      do {
+        ++p;
+      } while ((p < total) && ((source[p] >>> POSITION_BITS) == id));
+
+      if ((lengths[id] > length) && this.feasible(id, length, count, position, lists, cursor)) {
+        result[size++] = id;
+      }
+    }
+
+    // 索引に載せていない長い単語を番号順に混ぜる
+    if (longWords.length > 0) {
+      final int[] merged = new int[size + longWords.length];
+      int i = 0;
+      int j = 0;
+      int k = 0;
+      while ((i < size) || (j < longWords.length)) {
+        if ((j >= longWords.length) || ((i < size) && (result[i] < longWords[j]))) {
+          merged[k++] = result[i++];
+        } else {
+          merged[k++] = longWords[j++];
+        }
+      }
+      return merged;
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  // 制約のあるモーラを前から順に最も早い位置へ置いていき、
+  // 間の任意のモーラの分の隙間を空けながら単語の中に収まるかを調べる。
+  private boolean feasible(final int id, final int length, final int count,
+      final int[] position, final int[][] lists, final int[] cursor) {
+    final int first = id << POSITION_BITS;
+    final int last  = first | POSITION_MASK;
+
+    int need = position[0];
+    int prev = -1;
+    for (int k = 0; k < count; ++k) {
+      final int[] list = lists[k];
+      if (k > 0) {
+        need = prev + (position[k] - position[k-1]);
+      }
+
+      int p = InvertedIndex.lowerBound(list, cursor[k], first);
+      cursor[k] = p;
+      while ((p < list.length) && (list[p] <= last) && ((list[p] & POSITION_MASK) < need)) {
+        ++p;
+      }
+      if ((p >= list.length) || (list[p] > last)) {
+        return false;
+      }
+      prev = list[p] & POSITION_MASK;
+    }
+    return prev + (length - position[count-1]) <= lengths[id];
+  }
+
+  // list[from..] のうち value 以上の最初の位置 (指数探索)
+  private static int lowerBound(final int[] list, final int from, final int value) {
+    int lo = from;
+    int step = 1;
+    int hi = from;
+    while ((hi < list.length) && (list[hi] < value)) {
+      lo = hi + 1;
+      hi += step;
+      step <<= 1;
+    }
+    hi = Math.min(hi, list.length);
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (list[mid] < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
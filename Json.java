@@ -0,0 +1,53 @@
+/**
+ * 検索結果を JSON で書き出すための小さな道具。
+ */
+final class Json {
+  private Json() {
+  }
+
+  public static StringBuilder quote(final StringBuilder out, final String s) {
+    out.append('"');
+    for (int i = 0, length = s.length(); i < length; ++i) {
+      final char c = s.charAt(i);
+      switch (c) {
+      case '"' : out.append("\\\""); break;
+      case '\\': out.append("\\\\"); break;
+      case '\n': out.append("\\n" ); break;
+      case '\r': out.append("\\r" ); break;
+      case '\t': out.append("\\t" ); break;
+      default:
+        if (c < 0x20) {
+          out.append(String.format("\\u%04x", (int)c));
+        } else {
+          out.append(c);
+        }
+      }
+    }
+    return out.append('"');
+  }
+
+  // {"kana":…,"words":…,"feature":品詞の名前,"distance":…}
+  public static StringBuilder word(final StringBuilder out, final Word word, final int distance) {
+    out.append("{\"kana\":");
+    Json.quote(out, word.getKana());
+    out.append(",\"words\":");
+    Json.quote(out, word.getWords());
+    out.append(",\"feature\":");
+    Json.quote(out, Dictionary.NAMES[Integer.numberOfTrailingZeros(word.getFeature())]);
+    out.append(",\"distance\":").append(distance);
+    return out.append('}');
+  }
+
+  // ranking の offset 番目から高々 limit 個を配列として書く
+  public static StringBuilder words(final StringBuilder out, final Ranking ranking, final int offset, final int limit) {
+    final Word[] words = ranking.page(offset, limit);
+    out.append('[');
+    for (int i = 0, size = words.length; i < size; ++i) {
+      if (i > 0) {
+        out.append(',');
+      }
+      Json.word(out, words[i], ranking.distance(offset + i));
+    }
+    return out.append(']');
+  }
+}
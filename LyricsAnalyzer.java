@@ -0,0 +1,411 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.IOException;
+
+import java.util.Arrays;
+
+/**
+ * 歌詞の韻を調べる。読みを一行ずつ add すると、その行について見つけた韻を Listener にすぐ知らせる。
+ *
+ * 韻は Dictionary.TAIL や Word.matchInternal の母音の扱いと同じく、母音だけで比べる (子音は問わない)。
+ * ん・っ は母音の無いモーラとして、それどうしで一致する。母音を指定しないモーラは行の区切りと同じく扱う。
+ * 行の中の空白と句読点も区切りとし、その間の読みを別々に変換する (「あいうえお かきくけこ」の脚韻は「かきくけこ」の母音)。
+ *
+ *   脚韻   行末の母音が前のどの行の行末と一番長く一致するか。
+ *          行末から辿る木 (Trie の後ろから辿る木と同じもの) に行を加えながら、一番深く一致した節点の行を返す。
+ *   繰り返し 行の中の母音の並びが、それまでの歌詞のどこか (同じ行を含む) と一致するところ。
+ *          全ての行の母音を区切りを挟んで並べた列の接尾辞オートマトンを一モーラずつ伸ばし、
+ *          各位置で、前にも現れた一番長い接尾辞を求める。
+ *
+ * どちらも行どうしを総当たりで比べないので、手間は歌詞の長さにほぼ比例する。
+ */
+final class LyricsAnalyzer {
+  // 区切り (行末と、母音を指定しないモーラ)
+  private static final int BREAK    = Mora.Vowel.count.ordinal();
+  private static final int ALPHABET = BREAK + 1;
+
+  private static final int DEFAULT_MIN_LENGTH = 3;
+
+  // 空白と句読点の代わりに置くモーラ (母音を指定しないので区切りになる)
+  private static final short SEPARATOR = Mora.of(Mora.Consonant.none, Mora.Vowel.any);
+
+  // 母音の名前 (Mora.Vowel の順)
+  private static final String[] VOWELS = { "a", "i", "u", "e", "o", "N" };
+
+  /**
+   * 見つけた韻を受け取る。行とモーラの位置は 0 から数える。
+   */
+  public interface Listener {
+    // line 行の末尾 length モーラの母音が、lines (昇順) の各行の末尾と一致する
+    void endRhyme(int line, int length, int[] lines);
+
+    // line 行の from 番目からの length モーラの母音が、otherLine 行の otherFrom 番目からと一致する
+    void repeat(int line, int from, int length, int otherLine, int otherFrom);
+  }
+
+  private final int      minLength;
+  private final Listener listener;
+
+  private int lines;
+
+  // add(String) で読みを変換する場所
+  private short[] buffer = new short[64];
+
+  // 全ての行の母音を区切りを挟んで並べた列と、各行の先頭の位置
+  private byte[] stream     = new byte[256];
+  private int    size;
+  private int[]  lineStarts = new int[16];
+
+  // 接尾辞オートマトン。状態 s の遷移は next[s*ALPHABET+記号]、first[s] はその状態の文字列が最初に終わる位置。
+  private int[] next   = new int[ALPHABET * 512];
+  private int[] link   = new int[512];
+  private int[] length = new int[512];
+  private int[] first  = new int[512];
+  private int   states;
+  private int   last;
+
+  // 行末から辿る木。節点 n の子は child[n*ALPHABET+母音]、members[n] はそこを通った行。
+  private int[]   child        = new int[ALPHABET * 256];
+  private int[][] members      = new int[256][];
+  private int[]   memberCounts = new int[256];
+  private int     nodes;
+
+  public LyricsAnalyzer(final int minLength, final Listener listener) {
+    this.minLength = Math.max(1, minLength);
+    this.listener  = listener;
+
+    Arrays.fill(next, -1);
+    Arrays.fill(child, -1);
+    this.last  = this.newState(0, -1);
+    this.nodes = 1;
+  }
+
+  public int lines() {
+    return lines;
+  }
+
+  /**
+   * 読み (Word.toMora の書式に空白と句読点を交えたもの) を一行加える。
+   * 読めない文字があれば IllegalArgumentException を投げ、行は加えない。
+   */
+  public int add(final String text) {
+    if (buffer.length < text.length()) {
+      buffer = new short[Math.max(text.length(), 2 * buffer.length)];
+    }
+    return this.add(buffer, LyricsAnalyzer.toMora(text, buffer));
+  }
+
+  /**
+   * 一行の読みをモーラの列にして buffer の先頭から書き、書いた数を返す。buffer には text.length() 個の空きが要る。
+   * 空白と句読点で切った断片をそれぞれ Word.toMora で変換し、断片の間に区切りを一つ置く。
+   * 区切りの数は空白と句読点の続きの数を超えないので、モーラの数は text.length() を超えない。
+   */
+  static int toMora(final String text, final short[] buffer) {
+    int n    = 0;
+    int from = 0;
+    for (int i = 0, length = text.length(); i <= length; ++i) {
+      if ((i < length) && !LyricsAnalyzer.isSeparator(text.charAt(i))) {
+        continue;
+      }
+      if (from < i) {
+        // 区切りの後ろに書き、モーラになったときだけ区切りを置く (「ー」だけの断片などは何も書かない)
+        final int start = (n > 0) ? (n + 1) : n;
+        final int count = Word.toMora(text.substring(from, i), buffer, start);
+        if (count > 0) {
+          if (n > 0) {
+            buffer[n] = SEPARATOR;
+          }
+          n = start + count;
+        }
+      }
+      from = i + 1;
+    }
+    return n;
+  }
+
+  // 空白と句読点。ただし Word.toMora が指定に使う ' - . は除く。
+  private static boolean isSeparator(final char c) {
+    if (Character.isWhitespace(c)) {
+      return true;
+    }
+    switch (Character.getType(c)) {
+    case Character.CONNECTOR_PUNCTUATION    :
+    case Character.DASH_PUNCTUATION         :
+    case Character.START_PUNCTUATION        :
+    case Character.END_PUNCTUATION          :
+    case Character.INITIAL_QUOTE_PUNCTUATION:
+    case Character.FINAL_QUOTE_PUNCTUATION  :
+    case Character.OTHER_PUNCTUATION        : return "'-.".indexOf(c) < 0;
+    default                                 : return false;
+    }
+  }
+
+  /**
+   * モーラの列を一行加え、その行の番号を返す。空の行も一行と数える。
+   */
+  public int add(final short[] mora) {
+    return this.add(mora, mora.length);
+  }
+
+  // mora の先頭 length 個を一行として加える
+  private int add(final short[] mora, final int length) {
+    final int line = lines++;
+    if (line >= lineStarts.length) {
+      lineStarts = Arrays.copyOf(lineStarts, 2 * lineStarts.length);
+    }
+    lineStarts[line] = size;
+    final int lineEnd = size + length; // 行末の区切りの位置
+
+    // 繰り返し。右に伸ばせなくなった一致を知らせる。
+    int segment   = size; // 区切りの直後の位置
+    int runEnd    = -1;   // 伸ばしている一致の終わり (この行での位置)
+    int runLength = 0;
+    int runOther  = -1;   // 前に現れた位置 (列での終わりの位置)
+    for (int i = 0; i < length; ++i) {
+      final int c = LyricsAnalyzer.symbol(mora[i]);
+      final int p = size;
+      this.append(c);
+      if (c == BREAK) {
+        this.flush(line, lineEnd, runEnd, runLength, runOther);
+        runLength = 0;
+        segment   = p + 1;
+        continue;
+      }
+
+      final int s = link[last];
+      final int l = (s > 0) ? Math.min(this.length[s], p - segment + 1) : 0;
+      if ((runLength > 0) && (l <= runLength)) {
+        this.flush(line, lineEnd, runEnd, runLength, runOther);
+      }
+      runEnd    = p - lineStarts[line];
+      runLength = l;
+      runOther  = (s > 0) ? first[s] : -1;
+    }
+    this.append(BREAK);
+    this.flush(line, lineEnd, runEnd, runLength, runOther);
+
+    this.endRhyme(line, mora, length);
+    return line;
+  }
+
+  private void flush(final int line, final int lineEnd, final int end, final int length, final int other) {
+    if (length < minLength) {
+      return;
+    }
+    // 行末どうしの一致は脚韻として知らせる (行の中の空白や句読点の前で終わるものは繰り返し)
+    final int otherLine = this.lineOf(other);
+    final int otherEnd  = (otherLine == line) ? lineEnd : lineStarts[otherLine + 1] - 1;
+    if ((lineStarts[line] + end + 1 == lineEnd) && (other + 1 == otherEnd)) {
+      return;
+    }
+    listener.repeat(line, end - length + 1, length, otherLine, other - length + 1 - lineStarts[otherLine]);
+  }
+
+  private void endRhyme(final int line, final short[] mora, final int length) {
+    int node  = 0;
+    int found = -1; // 一番深く一致した節点
+    int depth = 0;
+    int count = 0;
+    for (int i = length - 1; i >= 0; --i) {
+      final int c = LyricsAnalyzer.symbol(mora[i]);
+      if (c == BREAK) {
+        break;
+      }
+      int n = child[node * ALPHABET + c];
+      if (n < 0) {
+        n = this.newNode();
+        child[node * ALPHABET + c] = n;
+      }
+      node = n;
+      if ((memberCounts[node] > 0) && (length - i >= minLength)) {
+        found = node;
+        depth = length - i;
+        count = memberCounts[node];
+      }
+      this.addMember(node, line);
+    }
+    if (found >= 0) {
+      listener.endRhyme(line, depth, Arrays.copyOf(members[found], count));
+    }
+  }
+
+  // 列の位置 p を含む行
+  private int lineOf(final int p) {
+    final int i = Arrays.binarySearch(lineStarts, 0, lines, p);
+    return (i >= 0) ? i : -(i + 1) - 1;
+  }
+
+  private static int symbol(final short mora) {
+    final int v = Mora.vowel(mora);
+    return (v < BREAK) ? v : BREAK;
+  }
+
+  // 列と接尾辞オートマトンを記号 c で伸ばす
+  private void append(final int c) {
+    if (size >= stream.length) {
+      stream = Arrays.copyOf(stream, 2 * stream.length);
+    }
+    final int p = size++;
+    stream[p] = (byte)c;
+
+    final int cur = this.newState(length[last] + 1, p);
+    int s = last;
+    while ((s >= 0) && (next[s * ALPHABET + c] < 0)) {
+      next[s * ALPHABET + c] = cur;
+      s = link[s];
+    }
+    if (s < 0) {
+      link[cur] = 0;
+    } else {
+      final int q = next[s * ALPHABET + c];
+      if (length[s] + 1 == length[q]) {
+        link[cur] = q;
+      } else {
+        final int clone = this.newState(length[s] + 1, first[q]);
+        System.arraycopy(next, q * ALPHABET, next, clone * ALPHABET, ALPHABET);
+        link[clone] = link[q];
+        while ((s >= 0) && (next[s * ALPHABET + c] == q)) {
+          next[s * ALPHABET + c] = clone;
+          s = link[s];
+        }
+        link[q]   = clone;
+        link[cur] = clone;
+      }
+    }
+    last = cur;
+  }
+
+  private int newState(final int length, final int first) {
+    if (states >= link.length) {
+      final int capacity = 2 * link.length;
+      final int filled   = next.length;
+      next        = Arrays.copyOf(next, ALPHABET * capacity);
+      Arrays.fill(next, filled, next.length, -1);
+      link        = Arrays.copyOf(link  , capacity);
+      this.length = Arrays.copyOf(this.length, capacity);
+      this.first  = Arrays.copyOf(this.first , capacity);
+    }
+    final int s = states++;
+    link       [s] = -1;
+    this.length[s] = length;
+    this.first [s] = first;
+    return s;
+  }
+
+  private int newNode() {
+    if (nodes >= memberCounts.length) {
+      final int capacity = 2 * memberCounts.length;
+      final int filled   = child.length;
+      child        = Arrays.copyOf(child, ALPHABET * capacity);
+      Arrays.fill(child, filled, child.length, -1);
+      members      = Arrays.copyOf(members     , capacity);
+      memberCounts = Arrays.copyOf(memberCounts, capacity);
+    }
+    return nodes++;
+  }
+
+  private void addMember(final int node, final int line) {
+    int[] lines = members[node];
+    if (lines == null) {
+      lines = members[node] = new int[2];
+    } else if (memberCounts[node] >= lines.length) {
+      lines = members[node] = Arrays.copyOf(lines, 2 * lines.length);
+    }
+    lines[memberCounts[node]++] = line;
+  }
+
+  /**
+   * 歌詞のファイル (省略すれば標準入力) を読み、見つけた韻を一つずつ JSON Lines で標準出力へ書く。
+   *
+   *   java LyricsAnalyzer [-min モーラ数] [ファイル]
+   *
+   * 行の番号は 1 から、モーラの位置は 0 から数える。行の中の空白や句読点の続きは一モーラと数える。
+   *   {"line":…,"end":{"length":…,"vowels":…,"lines":[…]}}
+   *   {"line":…,"repeat":{"from":…,"length":…,"vowels":…,"with":{"line":…,"from":…}}} (with は前に現れた所)
+   *   {"line":…,"error":…}
+   */
+  public static void main(final String[] args) throws IOException {
+    int    minLength = DEFAULT_MIN_LENGTH;
+    String file      = null;
+    for (int i = 0; i < args.length; ++i) {
+      if ("-min".equals(args[i]) && (i + 1 < args.length)) {
+        minLength = Integer.parseInt(args[++i]);
+      } else {
+        file = args[i];
+      }
+    }
+
+    final InputStream in = (file != null) ? new FileInputStream(file) : System.in;
+    try {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+      LyricsAnalyzer.run(minLength, reader, writer);
+      writer.flush();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void run(final int minLength, final BufferedReader in, final Writer out) throws IOException {
+    final short[][] current = new short[1][];
+    final StringBuilder sb = new StringBuilder();
+    final LyricsAnalyzer analyzer = new LyricsAnalyzer(minLength, new Listener() {
+      @Override
+      public void endRhyme(final int line, final int length, final int[] lines) {
+        sb.append("{\"line\":").append(line + 1);
+        sb.append(",\"end\":{\"length\":").append(length);
+        sb.append(",\"vowels\":");
+        LyricsAnalyzer.vowels(sb, current[0], current[0].length - length, length);
+        sb.append(",\"lines\":[");
+        for (int i = 0, size = lines.length; i < size; ++i) {
+          if (i > 0) {
+            sb.append(',');
+          }
+          sb.append(lines[i] + 1);
+        }
+        sb.append("]}}\n");
+      }
+
+      @Override
+      public void repeat(final int line, final int from, final int length, final int otherLine, final int otherFrom) {
+        sb.append("{\"line\":").append(line + 1);
+        sb.append(",\"repeat\":{\"from\":").append(from);
+        sb.append(",\"length\":").append(length);
+        sb.append(",\"vowels\":");
+        LyricsAnalyzer.vowels(sb, current[0], from, length);
+        sb.append(",\"with\":{\"line\":").append(otherLine + 1);
+        sb.append(",\"from\":").append(otherFrom);
+        sb.append("}}}\n");
+      }
+    });
+
+    String line;
+    while ((line = in.readLine()) != null) {
+      // 読めない行は空の行として数え、行の番号をずらさない
+      try {
+        final short[] mora = new short[line.length()];
+        current[0] = Arrays.copyOf(mora, LyricsAnalyzer.toMora(line, mora));
+      } catch (final IllegalArgumentException e) {
+        current[0] = new short[0];
+        sb.append("{\"line\":").append(analyzer.lines() + 1).append(",\"error\":");
+        Json.quote(sb, e.getMessage()).append("}\n");
+      }
+      analyzer.add(current[0]);
+      out.write(sb.toString());
+      sb.setLength(0);
+    }
+  }
+
+  private static StringBuilder vowels(final StringBuilder out, final short[] mora, final int from, final int length) {
+    final StringBuilder s = new StringBuilder();
+    for (int i = from, end = from + length; i < end; ++i) {
+      s.append(VOWELS[Mora.vowel(mora[i])]);
+    }
+    return Json.quote(out, s.toString());
+  }
+}
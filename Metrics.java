@@ -0,0 +1,217 @@
+import java.lang.management.ManagementFactory;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * 辞書の読み込みと検索の計測値。プロセスに一つ (INSTANCE) で、register で JMX に RhymeFinder:type=Metrics として載せる。
+ *
+ * 記録はロックを取らず、一回あたり System.nanoTime と数回の加算で済むので、常に有効にしておける。
+ * 木を辿った節点の数などは、辿る側が自分の変数で数えて検索の終わりに一度だけ加える。
+ */
+final class Metrics implements MetricsMXBean {
+  public static final String NAME = "RhymeFinder:type=Metrics";
+
+  // 検索の種類 (Dictionary.STRICT から Dictionary.ALIGN まで) の名前
+  private static final String[] MODES = { "strict", "head", "tail", "internal", "align" };
+
+  public static final Metrics INSTANCE = new Metrics();
+
+  private final Histogram   load   = new Histogram();
+  private final Histogram[] query  = new Histogram[MODES.length];
+  private final Histogram[] size   = new Histogram[MODES.length];
+  private final Histogram   sort   = new Histogram();
+  private final Histogram   render = new Histogram();
+
+  private final LongAdder visited = new LongAdder();
+  private final LongAdder scored  = new LongAdder();
+
+  private Metrics() {
+    for (int mode = 0; mode < MODES.length; ++mode) {
+      query[mode] = new Histogram();
+      size [mode] = new Histogram();
+    }
+  }
+
+  /**
+   * JMX に載せる。JMX の準備には時間がかかるので、最初の検索ではなく起動時に呼ぶ。
+   * 載せなくても記録はする。
+   */
+  public static void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(NAME));
+    } catch (final JMException e) {
+      // 既に載っている (別のクラスローダーで読まれたなど)
+    } catch (final SecurityException e) {
+      // アプレットなど JMX を使えない環境
+    }
+  }
+
+  // 計測を始めた時刻。終わりに渡す。
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  public void load(final long start) {
+    load.record(System.nanoTime() - start);
+  }
+
+  // mode の検索 (キャッシュに当たったものも含む) が start から count 件を返すまで
+  public void query(final int mode, final long start, final int count) {
+    query[mode].record(System.nanoTime() - start);
+    size [mode].record(count);
+  }
+
+  public void sort(final long start) {
+    sort.record(System.nanoTime() - start);
+  }
+
+  // 結果の欄を一度描くまで (RhymeFinder.ResultList.paintComponent)
+  public void render(final long start) {
+    render.record(System.nanoTime() - start);
+  }
+
+  public void visited(final long nodes) {
+    if (nodes > 0) {
+      visited.add(nodes);
+    }
+  }
+
+  public void scored(final long words) {
+    if (words > 0) {
+      scored.add(words);
+    }
+  }
+
+  @Override
+  public Summary getLoad() {
+    return load.summary(1000);
+  }
+
+  @Override
+  public Map<String, Summary> getLatency() {
+    final Map<String, Summary> map = new LinkedHashMap<String, Summary>();
+    for (int mode = 0; mode < MODES.length; ++mode) {
+      map.put(MODES[mode], query[mode].summary(1000));
+    }
+    map.put("sort"  , sort  .summary(1000));
+    map.put("render", render.summary(1000));
+    return map;
+  }
+
+  @Override
+  public Map<String, Summary> getResultSize() {
+    final Map<String, Summary> map = new LinkedHashMap<String, Summary>();
+    for (int mode = 0; mode < MODES.length; ++mode) {
+      map.put(MODES[mode], size[mode].summary(1));
+    }
+    return map;
+  }
+
+  @Override
+  public long getNodesVisited() {
+    return visited.sum();
+  }
+
+  @Override
+  public long getCandidatesScored() {
+    return scored.sum();
+  }
+
+  @Override
+  public void reset() {
+    load.reset();
+    for (int mode = 0; mode < MODES.length; ++mode) {
+      query[mode].reset();
+      size [mode].reset();
+    }
+    sort  .reset();
+    render.reset();
+    visited.reset();
+    scored .reset();
+  }
+
+  /**
+   * 0 以上の値の分布。2 の冪ごとの区間をさらに 4 つに分けて数える。
+   * 値 v の区間は、v < 4 なら v、そうでなければ最上位ビットの位置 b と次の 2 ビット s から 4 * (b - 1) + s。
+   */
+  private static final class Histogram {
+    private static final int BUCKETS = 4 * 63;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder       total  = new LongAdder();
+    private final AtomicLong      max    = new AtomicLong();
+
+    public void record(final long value) {
+      final long v = Math.max(value, 0);
+      counts.incrementAndGet(Histogram.bucket(v));
+      total.add(v);
+      long m = max.get();
+      while ((v > m) && !max.compareAndSet(m, v)) {
+        m = max.get();
+      }
+    }
+
+    private static int bucket(final long v) {
+      if (v < 4) {
+        return (int)v;
+      }
+      final int b = 63 - Long.numberOfLeadingZeros(v);
+      return 4 * (b - 1) + (int)((v >>> (b - 2)) & 3);
+    }
+
+    // 区間 i に入る最小の値
+    private static long lower(final int i) {
+      if (i < 4) {
+        return i;
+      }
+      return (long)(4 + (i & 3)) << ((i >> 2) - 1);
+    }
+
+    public void reset() {
+      for (int i = 0; i < BUCKETS; ++i) {
+        counts.set(i, 0);
+      }
+      total.reset();
+      max.set(0);
+    }
+
+    // 値を scale で割って (時間ならナノ秒をマイクロ秒に) まとめる。記録と並行に読むので、厳密には揃わないことがある。
+    public Summary summary(final long scale) {
+      final long[] snapshot = new long[BUCKETS];
+      long count = 0;
+      for (int i = 0; i < BUCKETS; ++i) {
+        snapshot[i] = counts.get(i);
+        count += snapshot[i];
+      }
+      final long max = this.max.get();
+      return new Summary(count, total.sum() / scale, max / scale,
+        Math.min(Histogram.percentile(snapshot, count, 0.50), max) / scale,
+        Math.min(Histogram.percentile(snapshot, count, 0.90), max) / scale,
+        Math.min(Histogram.percentile(snapshot, count, 0.99), max) / scale);
+    }
+
+    // 小さいほうから割合 q の位置にある値を含む区間の上端
+    private static long percentile(final long[] counts, final long count, final double q) {
+      if (count <= 0) {
+        return 0;
+      }
+      final long rank = (long)Math.ceil(q * count);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; ++i) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return (i + 1 < BUCKETS) ? Histogram.lower(i + 1) - 1 : Long.MAX_VALUE;
+        }
+      }
+      return Long.MAX_VALUE;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+import java.beans.ConstructorProperties;
+
+import java.util.Map;
+
+/**
+ * JMX で公開する計測値 (Metrics)。jconsole などで RhymeFinder:type=Metrics として見る。
+ * JMX が読めるよう、この型と Summary だけは public にする。
+ *
+ * 時間の単位はマイクロ秒、件数の単位は単語の数。
+ * 百分位は対数の区間で数えるので、値は区間の上端 (誤差は高々 25%) になる。
+ */
+public interface MetricsMXBean {
+  // 品詞のまとまりごとの辞書の読み込み (Dictionary.Builder)
+  Summary getLoad();
+
+  // 種類 (strict, head, tail, internal, align) ごとの検索と、sort (Ranking.page)、render (結果の欄を描く。見えている行の取り出しを含む) の時間
+  Map<String, Summary> getLatency();
+
+  // 種類ごとの検索結果の件数
+  Map<String, Summary> getResultSize();
+
+  // 木を辿った節点の数
+  long getNodesVisited();
+
+  // 距離を計算したり中間韻を照合したりした単語の数
+  long getCandidatesScored();
+
+  // 全ての計測値を 0 に戻す
+  void reset();
+
+  /**
+   * 一つの計測の分布。
+   */
+  final class Summary {
+    private final long count;
+    private final long total;
+    private final long max;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+
+    @ConstructorProperties({ "count", "total", "max", "p50", "p90", "p99" })
+    public Summary(final long count, final long total, final long max, final long p50, final long p90, final long p99) {
+      this.count = count;
+      this.total = total;
+      this.max   = max;
+      this.p50   = p50;
+      this.p90   = p90;
+      this.p99   = p99;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getTotal() {
+      return total;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public long getP50() {
+      return p50;
+    }
+
+    public long getP90() {
+      return p90;
+    }
+
+    public long getP99() {
+      return p99;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + " total=" + total + " max=" + max + " p50=" + p50 + " p90=" + p90 + " p99=" + p99;
+    }
+  }
+}
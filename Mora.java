@@ -14,72 +14,176 @@ final class Mora
     none, count, any,
   }
 
-  private final Consonant c;
-  private final Vowel     v;
-  private final int       a;
+  // モーラは short 一つに詰め込んで扱う。
+  //   bit  0- 5: 子音 (Consonant の序数)
+  //   bit  6- 8: 母音 (Vowel の序数)
+  //   bit  9-14: 強勢
+  private static final int CONSONANT_BITS  = 6;
+  private static final int VOWEL_BITS      = 3;
+  private static final int VOWEL_SHIFT     = CONSONANT_BITS;
+  private static final int ACCENT_SHIFT    = CONSONANT_BITS + VOWEL_BITS;
+  private static final int CONSONANT_MASK  = (1 << CONSONANT_BITS) - 1;
+  private static final int VOWEL_MASK      = (1 << VOWEL_BITS) - 1;
+  private static final int ACCENT_MAX      = (1 << (15 - ACCENT_SHIFT)) - 1;
 
-  public Mora(final Consonant c, final Vowel v) {
-    this(c, v, 0);
+  public static final int CONSONANT_ANY    = Consonant.any.ordinal();
+  public static final int CONSONANT_COUNT  = Consonant.values().length;
+  public static final int VOWEL_ANY        = Vowel.any.ordinal();
+  public static final int VOWEL_COUNT      = Vowel.values().length;
+
+  // 強勢を除いた子音・母音の組を表すマスク
+  public static final int KEY_MASK         = (1 << ACCENT_SHIFT) - 1;
+
+  private static final Consonant[] CONSONANTS = Consonant.values();
+  private static final Vowel    [] VOWELS     = Vowel    .values();
+
+  // 子音間の距離表 (子音の序数 x 子音の序数)
+  private static final byte[] DISTANCE = new byte[CONSONANTS.length * CONSONANTS.length];
+  static {
+    for (final Consonant a : CONSONANTS) {
+      for (final Consonant b : CONSONANTS) {
+        DISTANCE[a.ordinal() * CONSONANTS.length + b.ordinal()] = (byte)Mora.distance(a, b);
+      }
+    }
   }
 
-  public Mora(final Consonant c, final Vowel v, final int a) {
-    this.c = c;
-    this.v = v;
-    this.a = a;
+  private Mora() {
   }
 
-  @Override
-  public boolean equals(final Object object) {
-    return (object != null)
-      && (object instanceof Mora)
-      && this.equals((Mora)object);
+  public static short of(final Consonant c, final Vowel v) {
+    return Mora.of(c, v, 0);
   }
 
-  public boolean equals(final Mora mora) {
-    return (mora != null)
-      && (c.equals(mora.c) || Mora.Consonant.any.equals(c) || Mora.Consonant.any.equals(mora.c))
-      && (v.equals(mora.v) || Mora.Vowel    .any.equals(v) || Mora.Vowel    .any.equals(mora.v));
+  public static short of(final Consonant c, final Vowel v, final int a) {
+    return (short)((Math.min(a, ACCENT_MAX) << ACCENT_SHIFT) | (v.ordinal() << VOWEL_SHIFT) | c.ordinal());
   }
 
-  @Override
-  public int hashCode() {
-    return c.ordinal() * Vowel.count.ordinal() + v.ordinal();
+  // 強勢を除いた子音・母音の組
+  public static short key(final int consonant, final int vowel) {
+    return (short)((vowel << VOWEL_SHIFT) | consonant);
   }
 
-  @Override
-  public String toString() {
-    return c.toString() + v.toString();
+  public static int consonant(final short mora) {
+    return mora & CONSONANT_MASK;
   }
 
-  public Vowel getVowel() {
-    return v;
+  public static int vowel(final short mora) {
+    return (mora >> VOWEL_SHIFT) & VOWEL_MASK;
+  }
+
+  public static int accent(final short mora) {
+    return mora >> ACCENT_SHIFT;
+  }
+
+  public static Consonant getConsonant(final short mora) {
+    return CONSONANTS[Mora.consonant(mora)];
+  }
+
+  public static Vowel getVowel(final short mora) {
+    return VOWELS[Mora.vowel(mora)];
+  }
+
+  public static boolean equals(final short a, final short b) {
+    final int ca = Mora.consonant(a);
+    final int cb = Mora.consonant(b);
+    if ((ca != cb) && (ca != CONSONANT_ANY) && (cb != CONSONANT_ANY)) {
+      return false;
+    }
+    final int va = Mora.vowel(a);
+    final int vb = Mora.vowel(b);
+    return (va == vb) || (va == VOWEL_ANY) || (vb == VOWEL_ANY);
+  }
+
+  // モーラの集合は、none までの子音と母音の組ごとに一ビットを立てた long の配列で表す。
+  // any を含むモーラは、それと等しい (Mora.equals) 全ての組を表す。
+  private static final int SET_CONSONANTS = Consonant.none.ordinal() + 1;
+  private static final int SET_VOWELS     = Vowel    .none.ordinal() + 1;
+  public  static final int SET_LENGTH     = (SET_CONSONANTS * SET_VOWELS + 63) / 64;
+
+  public static long[] set(final short[] moras) {
+    final long[] set = new long[SET_LENGTH];
+    for (final short mora : moras) {
+      Mora.add(set, mora);
+    }
+    return set;
   }
 
-  public Mora getVowelMora() {
+  private static void add(final long[] set, final short mora) {
+    final int c = Mora.consonant(mora);
+    final int v = Mora.vowel(mora);
+    for (int w = (v == VOWEL_ANY) ? 0 : v, wEnd = (v == VOWEL_ANY) ? SET_VOWELS : v + 1; w < wEnd; ++w) {
+      for (int d = (c == CONSONANT_ANY) ? 0 : c, dEnd = (c == CONSONANT_ANY) ? SET_CONSONANTS : c + 1; d < dEnd; ++d) {
+        final int bit = w * SET_CONSONANTS + d;
+        set[bit >> 6] |= 1L << bit;
+      }
+    }
+  }
+
+  // 二つの集合に共通の組があるか
+  public static boolean intersects(final long[] a, final long[] b) {
+    for (int i = 0; i < SET_LENGTH; ++i) {
+      if ((a[i] & b[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // 集合に mora と等しい組があるか
+  public static boolean intersects(final long[] set, final short mora) {
+    final int c = Mora.consonant(mora);
+    final int v = Mora.vowel(mora);
+    if ((c != CONSONANT_ANY) && (v != VOWEL_ANY)) {
+      final int bit = v * SET_CONSONANTS + c;
+      return (set[bit >> 6] & (1L << bit)) != 0;
+    }
+    final long[] other = new long[SET_LENGTH];
+    Mora.add(other, mora);
+    return Mora.intersects(set, other);
+  }
+
+  public static boolean isEmpty(final long[] set) {
+    for (final long bits : set) {
+      if (bits != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static String toString(final short mora) {
+    return Mora.getConsonant(mora).toString() + Mora.getVowel(mora).toString();
+  }
+
+  public static short getVowelMora(final short mora) {
     // 長音を生成するためのものなので、
     // 子音が〈none〉であることに注意。
-    return new Mora(Consonant.none, v);
+    return (short)((Mora.vowel(mora) << VOWEL_SHIFT) | Consonant.none.ordinal());
   }
 
-  public Mora cloneConsonant() {
+  public static short cloneConsonant(final short mora) {
     // 母音の無視を指定するために使用するものなので、
     // 母音が〈any〉であることに注意。
-    return new Mora(c, Vowel.any);
+    return (short)((VOWEL_ANY << VOWEL_SHIFT) | Mora.consonant(mora));
   }
 
-  public Mora cloneVowel() {
+  public static short cloneVowel(final short mora) {
     // 子音の無視を指定するために使用するものなので、
     // 子音が〈any〉であることに注意。
-    return new Mora(Consonant.any, v);
+    return (short)((Mora.vowel(mora) << VOWEL_SHIFT) | CONSONANT_ANY);
+  }
+
+  public static short cloneAccent(final short mora) {
+    return (short)((Math.min(Mora.accent(mora) + 1, ACCENT_MAX) << ACCENT_SHIFT) | (mora & KEY_MASK));
   }
 
-  public Mora cloneAccent() {
-    return new Mora(c, v, a+1);
+  public static int distance(final short a, final short b) {
+    final int accent = 1 + Mora.accent(a) + Mora.accent(b);
+    return accent * Mora.consonantDistance(Mora.consonant(a), Mora.consonant(b));
   }
 
-  public int distance(final Mora mora) {
-    final int accent = 1 + this.a + mora.a;
-    return accent * Mora.distance(c, mora.c);
+  public static int consonantDistance(final int a, final int b) {
+    return DISTANCE[a * CONSONANTS.length + b];
   }
 
   private static int distance(final Consonant a, final Consonant b) {
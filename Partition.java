@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 辞書のうち、品詞のまとまり一つ分 (Dictionary.PARTITIONS)。
+ * 単語の表・木・転置索引を持ち、Dictionary が初めて使うときに作る。
+ */
+final class Partition {
+  private final Word[]        words;
+  private final WordTable     table;
+  private final Trie          head;
+  private final InvertedIndex index;
+
+  public Partition(final Word[] words, final ExecutorService exec) {
+    this(words, null, exec);
+  }
+
+  // head が null でなければ、整列した words から作った木 (Snapshot が読み込んだもの) として使う
+  public Partition(final Word[] words, final Trie head, final ExecutorService exec) {
+    this.words = words;
+    Arrays.sort(words);
+
+    // 表・転置索引・後ろ向きの木は別のスレッドで、前向きの木はこのスレッドで作る
+    final Future<WordTable> table = exec.submit(new Callable<WordTable>() {
+      @Override
+      public WordTable call() {
+        return new WordTable(words);
+      }
+    });
+    final Future<InvertedIndex> index = exec.submit(new Callable<InvertedIndex>() {
+      @Override
+      public InvertedIndex call() {
+        return new InvertedIndex(words);
+      }
+    });
+    this.head  = (head != null) ? head : new Trie.Builder().build(words, exec);
+    this.table = Dictionary.get(table);
+    this.index = Dictionary.get(index);
+  }
+
+  public int size() {
+    return words.length;
+  }
+
+  /**
+   * 品詞が mask に含まれ、blacklist (Mora.set) のモーラを含まない単語の検索結果 (Dictionary.rank を参照)。
+   */
+  public Ranking.Part rank(final int mode, final short[] query, final int mask, final long[] blacklist) {
+    switch (mode) {
+    case Dictionary.STRICT  :
+    case Dictionary.HEAD    :
+    case Dictionary.TAIL    : return this.rank(mode, query, head.collect(mode, query, mask, blacklist, table));
+    case Dictionary.INTERNAL: return this.rank(mode, query, this.matchInternalIds(query, mask, blacklist));
+    case Dictionary.ALIGN   : return this.rank(mode, query, mask, blacklist, Dictionary.ALIGN_DISTANCE, 0);
+    default                 : throw new IllegalArgumentException("mode: " + mode);
+    }
+  }
+
+  public Ranking.Part rank(final int mode, final short[] query, final int mask, final long[] blacklist,
+      final int maxDistance, final int limit) {
+    if (mode == Dictionary.INTERNAL) {
+      return this.rank(mode, query, mask, blacklist);
+    }
+    if (mode == Dictionary.ALIGN) {
+      return new Ranking.Part(words, table, mode, head.align(query, mask, blacklist, maxDistance, limit, table));
+    }
+    return new Ranking.Part(words, table, mode, head.search(mode, query, mask, blacklist, maxDistance, limit, table));
+  }
+
+  /**
+   * この分割の木を一モーラずつ辿るカーソル (Trie.cursor を参照)。
+   */
+  public Trie.Cursor cursor(final int mode, final int mask, final long[] blacklist) {
+    return head.cursor(mode, mask, blacklist);
+  }
+
+  // cursor (この分割の cursor で作ったもの) の今の問い合わせの検索結果
+  public Ranking.Part rank(final Trie.Cursor cursor) {
+    return this.rank(cursor.getMode(), cursor.query(), cursor.collect(table));
+  }
+
+  private Ranking.Part rank(final int mode, final short[] query, final int[] ids) {
+    final int size = ids.length;
+
+    final int[] distance = new int[size];
+    if (mode != Dictionary.INTERNAL) {
+      table.distance(mode, query, ids, size, distance);
+      Metrics.INSTANCE.scored(size);
+    }
+
+    final long[] keys = new long[size];
+    for (int i = 0; i < size; ++i) {
+      keys[i] = ((long)distance[i] << 32) | table.rank(mode, ids[i]);
+    }
+    return new Ranking.Part(words, table, mode, keys);
+  }
+
+  private int[] matchInternalIds(final short[] query, final int mask, final long[] blacklist) {
+    final int[] candidates = index.candidates(query);
+    int size = 0;
+    for (int i = 0, length = candidates.length; i < length; ++i) {
+      if ((i & 0x3ff) == 0) {
+        Dictionary.checkInterrupted();
+      }
+      final int  id   = candidates[i];
+      final Word word = words[id];
+      if (((word.getFeature() & mask) != 0) && !word.contains(blacklist) && word.matchInternal(query)) {
+        candidates[size++] = id;
+      }
+    }
+    Metrics.INSTANCE.scored(candidates.length);
+    return Arrays.copyOf(candidates, size);
+  }
+}
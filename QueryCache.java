@@ -0,0 +1,175 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 検索結果 (Ranking) の LRU キャッシュ。
+ *
+ * 問い合わせは文字列ではなくモーラの列で、除くモーラは Mora.set の集合で比べるので、
+ * ひらがなとカタカナ、除くモーラの順や重複の違いは同じ問い合わせになる。
+ * 持つ結果の個数と、結果に含まれる単語の数の合計の両方に上限を設け、超えたら古く使ったものから捨てる。
+ *
+ * ユーザー定義の単語が変わったら invalidate を呼ぶ。
+ * 変更と同時に検索していた結果も、世代を比べて載せないので、古い結果が残ることはない。
+ */
+final class QueryCache {
+  public static final int DEFAULT_ENTRIES = 256;
+  public static final int DEFAULT_WEIGHT  = 1 << 20;
+
+  // 距離の上限を指定しない問い合わせの maxDistance
+  public static final int UNBOUNDED = Integer.MIN_VALUE;
+
+  private final int maxEntries;
+  private final int maxWeight;
+
+  private final LinkedHashMap<Key, Ranking> map = new LinkedHashMap<Key, Ranking>(16, 0.75f, true);
+  private long weight;
+  private long generation;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public QueryCache() {
+    this(DEFAULT_ENTRIES, DEFAULT_WEIGHT);
+  }
+
+  /**
+   * 高々 maxEntries 個の結果を、単語の数の合計が maxWeight を超えない範囲で持つ。
+   */
+  public QueryCache(final int maxEntries, final int maxWeight) {
+    this.maxEntries = maxEntries;
+    this.maxWeight  = maxWeight;
+  }
+
+  /**
+   * 問い合わせの鍵を作る。limit は中間韻では使わないので 0 とする。
+   */
+  public static Key key(final int mode, final short[] query, final int mask, final long[] blacklist,
+      final int maxDistance, final int limit) {
+    return new Key(mode, query.clone(), mask, blacklist, maxDistance, (mode == Dictionary.INTERNAL) ? 0 : limit);
+  }
+
+  /**
+   * 鍵の結果を返す。無ければ null を返す。
+   */
+  public synchronized Ranking get(final Key key) {
+    final Ranking ranking = map.get(key);
+    if (ranking != null) {
+      ++hits;
+    } else {
+      ++misses;
+    }
+    return ranking;
+  }
+
+  /**
+   * 結果を検索し始める前の世代。put に渡す。
+   */
+  public synchronized long generation() {
+    return generation;
+  }
+
+  /**
+   * 結果を載せる。generation の後で invalidate が呼ばれていたら載せない。
+   */
+  public synchronized void put(final Key key, final Ranking ranking, final long generation) {
+    if ((generation != this.generation) || (maxEntries <= 0) || (ranking.size() > maxWeight)) {
+      return;
+    }
+    final Ranking previous = map.put(key, ranking);
+    if (previous != null) {
+      weight -= previous.size();
+    }
+    weight += ranking.size();
+
+    final Iterator<Ranking> i = map.values().iterator();
+    while ((map.size() > maxEntries) || (weight > maxWeight)) {
+      weight -= i.next().size();
+      i.remove();
+      ++evictions;
+    }
+  }
+
+  /**
+   * 品詞が mask と重なる問い合わせの結果を捨てる。
+   */
+  public synchronized void invalidate(final int mask) {
+    ++generation;
+    final Iterator<Map.Entry<Key, Ranking>> i = map.entrySet().iterator();
+    while (i.hasNext()) {
+      final Map.Entry<Key, Ranking> entry = i.next();
+      if ((entry.getKey().mask & mask) != 0) {
+        weight -= entry.getValue().size();
+        i.remove();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    ++generation;
+    map.clear();
+    weight = 0;
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public static final class Key {
+    private final int     mode;
+    private final short[] query;
+    private final int     mask;
+    private final long[]  blacklist;
+    private final int     maxDistance;
+    private final int     limit;
+    private final int     hash;
+
+    private Key(final int mode, final short[] query, final int mask, final long[] blacklist,
+        final int maxDistance, final int limit) {
+      this.mode        = mode;
+      this.query       = query;
+      this.mask        = mask;
+      this.blacklist   = blacklist;
+      this.maxDistance = maxDistance;
+      this.limit       = limit;
+
+      int hash = mode;
+      hash = 31 * hash + Arrays.hashCode(query);
+      hash = 31 * hash + mask;
+      hash = 31 * hash + Arrays.hashCode(blacklist);
+      hash = 31 * hash + maxDistance;
+      hash = 31 * hash + limit;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      final Key key = (Key)o;
+      return (hash == key.hash) && (mode == key.mode) && (mask == key.mask)
+          && (maxDistance == key.maxDistance) && (limit == key.limit)
+          && Arrays.equals(query, key.query) && Arrays.equals(blacklist, key.blacklist);
+    }
+  }
+}
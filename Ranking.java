@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * 距離の昇順に並べた検索結果。
+ * 距離は作成時に一度だけ計算し、並べ替えは要求された頁までしか行わない。
+ * 辞書の分割 (Partition) ごとの結果は、要求された頁まで少しずつ併合する。
+ */
+final class Ranking {
+  private final int    mode;
+  private final Part[] parts;
+  private final int    size;
+
+  // 併合済みの結果 (分割が二つ以上のときだけ使う)
+  private Word[] words     = new Word[0];
+  private int[]  distances = new int [0];
+  private int    merged    = 0;
+  private final int[] cursor;
+
+  public Ranking(final int mode, final Part... parts) {
+    this(mode, 0, parts);
+  }
+
+  /**
+   * 併合した結果のうち、先頭から高々 limit 個だけを使う (limit が 0 以下なら全て)。
+   */
+  public Ranking(final int mode, final int limit, final Part... parts) {
+    this.mode   = mode;
+    this.parts  = parts;
+    this.cursor = new int[parts.length];
+    int size = 0;
+    for (final Part part : parts) {
+      size += part.size();
+    }
+    this.size = (limit > 0) ? Math.min(size, limit) : size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Word[] toArray() {
+    return this.page(0, size);
+  }
+
+  /**
+   * offset 番目から高々 limit 個を返す。
+   */
+  public synchronized Word[] page(final int offset, final int limit) {
+    final long start = Metrics.start();
+    final int from = Math.min(Math.max(offset, 0), size);
+    final int to   = (int)Math.min((long)from + Math.max(limit, 0), size);
+
+    final Word[] result = new Word[to - from];
+    if (parts.length == 1) {
+      final Part part = parts[0];
+      part.select(to);
+      for (int i = from; i < to; ++i) {
+        result[i - from] = part.word(i);
+      }
+    } else {
+      this.merge(to);
+      System.arraycopy(words, from, result, 0, to - from);
+    }
+    Metrics.INSTANCE.sort(start);
+    return result;
+  }
+
+  /**
+   * index 番目の距離を返す。
+   */
+  public synchronized int distance(final int index) {
+    if (parts.length == 1) {
+      parts[0].select(index + 1);
+      return parts[0].distance(index);
+    }
+    this.merge(index + 1);
+    return distances[index];
+  }
+
+  // 先頭から to 個まで併合する
+  private void merge(final int to) {
+    if (to <= merged) {
+      return;
+    }
+    if (words.length < to) {
+      final int capacity = Math.max(to, Math.min(size, words.length * 2));
+      words     = Arrays.copyOf(words    , capacity);
+      distances = Arrays.copyOf(distances, capacity);
+    }
+    for (final Part part : parts) {
+      part.select(Math.min(to, part.size()));
+    }
+    while (merged < to) {
+      int best = -1;
+      for (int p = 0; p < parts.length; ++p) {
+        if ((cursor[p] < parts[p].size()) && ((best < 0) || (this.compare(p, best) < 0))) {
+          best = p;
+        }
+      }
+      final Part part = parts[best];
+      words    [merged] = part.word    (cursor[best]);
+      distances[merged] = part.distance(cursor[best]);
+      ++merged;
+      ++cursor[best];
+    }
+  }
+
+  // 分割 p と q の先頭を比べる
+  private int compare(final int p, final int q) {
+    final int dp = parts[p].distance(cursor[p]);
+    final int dq = parts[q].distance(cursor[q]);
+    if (dp != dq) {
+      return (dp < dq) ? -1 : 1;
+    }
+    return Word.compare(mode, parts[p].word(cursor[p]), parts[q].word(cursor[q]));
+  }
+
+  /**
+   * 一つの分割の中での検索結果。
+   */
+  public static final class Part {
+    private final Word[]    words;
+    private final WordTable table;
+    private final int       mode;
+
+    // (距離 << 32) | 順位。順位は単語ごとに異なるので、鍵に重複はない。
+    private final long[] keys;
+
+    // keys[0..sorted) は整列済みで、残りはそれより大きい
+    private int sorted;
+
+    public Part(final Word[] words, final WordTable table, final int mode, final long[] keys) {
+      this.words  = words;
+      this.table  = table;
+      this.mode   = mode;
+      this.keys   = keys;
+      this.sorted = 0;
+    }
+
+    // 表のない単語の列から作る。順位は words の添字で、words は同じ距離での並び順に並んでいること。
+    public Part(final Word[] words, final int mode, final long[] keys) {
+      this(words, null, mode, keys);
+    }
+
+    public int size() {
+      return keys.length;
+    }
+
+    public Word word(final int index) {
+      final int rank = (int)keys[index];
+      return (table != null) ? words[table.byRank(mode, rank)] : words[rank];
+    }
+
+    public int distance(final int index) {
+      return (int)(keys[index] >> 32);
+    }
+
+    // 小さいほうから k 個を keys の先頭に整列させる
+    public void select(final int k) {
+      final int size = keys.length;
+      if (k <= sorted) {
+        return;
+      }
+      if (k * 2 >= size) {
+        Arrays.sort(keys, sorted, size);
+        sorted = size;
+        return;
+      }
+
+      // 大きさ k の最大ヒープで k 番目の鍵を求め、それ以下を前に寄せる
+      final long[] heap = new long[k];
+      int count = 0;
+      for (int i = sorted; i < size; ++i) {
+        final long key = keys[i];
+        if (count < k - sorted) {
+          heap[count] = key;
+          Part.up(heap, count++);
+        } else if (key < heap[0]) {
+          heap[0] = key;
+          Part.down(heap, count);
+        }
+      }
+
+      final long threshold = heap[0];
+      int front = sorted;
+      for (int i = sorted; i < size; ++i) {
+        if (keys[i] <= threshold) {
+          final long key = keys[front];
+          keys[front++] = keys[i];
+          keys[i] = key;
+        }
+      }
+      Arrays.sort(keys, sorted, k);
+      sorted = k;
+    }
+
+    private static void up(final long[] heap, int i) {
+      final long key = heap[i];
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        if (heap[parent] >= key) {
+          break;
+        }
+        heap[i] = heap[parent];
+        i = parent;
+      }
+      heap[i] = key;
+    }
+
+    private static void down(final long[] heap, final int count) {
+      final long key = heap[0];
+      int i = 0;
+      for (;;) {
+        int child = 2 * i + 1;
+        if (child >= count) {
+          break;
+        }
+        if ((child + 1 < count) && (heap[child+1] > heap[child])) {
+          ++child;
+        }
+        if (heap[child] <= key) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = key;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+import javax.swing.AbstractListModel;
+
+/**
+ * 検索結果 (Ranking) を JList に見せる。
+ * 行は表示されるときに BLOCK 行ずつ Ranking.page で取り出すので、
+ * 結果がいくら多くても、並べ替えと取り出しは見えたところまでしか行わない。
+ * EDT からだけ使う。
+ */
+final class RankingListModel extends AbstractListModel<Word> {
+  private static final long serialVersionUID = 1L;
+
+  private static final int BLOCK = 256;
+
+  private final Ranking ranking;
+
+  // 最後に取り出した BLOCK 行
+  private int    offset = -1;
+  private Word[] block;
+
+  public RankingListModel(final Ranking ranking) {
+    this.ranking = ranking;
+  }
+
+  public Ranking getRanking() {
+    return ranking;
+  }
+
+  @Override
+  public int getSize() {
+    return ranking.size();
+  }
+
+  @Override
+  public Word getElementAt(final int index) {
+    final int offset = index - (index % BLOCK);
+    if (offset != this.offset) {
+      this.block  = ranking.page(offset, BLOCK);
+      this.offset = offset;
+    }
+    return block[index - offset];
+  }
+}
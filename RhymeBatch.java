@@ -0,0 +1,174 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.IOException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 問い合わせを一行に一つずつ書いたファイル (省略すれば標準入力) を読み、
+ * 全ての CPU で並行に検索して、結果を入力と同じ順に JSON Lines で標準出力へ書く。
+ *
+ *   java RhymeBatch [-limit 件数] [-mask 品詞] [-blacklist モーラ] [ファイル]
+ *
+ * 一行の出力は {"line":…,"query":…,"strict":[…],"head":[…],"tail":[…],"internal":[…]}、
+ * 問い合わせが読めなければ {"line":…,"query":…,"error":…}。
+ * 引数が読めなければ {"error":…} を一行書いて 2 で終わる。
+ * 結果は揃った行から順に書き、入力が途切れたら書き出しを待たずに送るので、パイプの先にもすぐ届く。
+ * 先読みする行数に上限を設けているので、入力がいくら大きくても使うメモリは変わらない。
+ */
+final class RhymeBatch {
+  private static final String[] MODES = { "strict", "head", "tail", "internal" };
+
+  private static final int DEFAULT_LIMIT = 20;
+
+  private final Dictionary dictionary;
+  private final int        limit;
+  private final int        mask;
+  private final short[]    blacklist;
+
+  public RhymeBatch(final Dictionary dictionary, final int limit, final int mask, final short[] blacklist) {
+    this.dictionary = dictionary;
+    this.limit      = limit;
+    this.mask       = mask;
+    this.blacklist  = blacklist;
+  }
+
+  public static void main(final String[] args) throws IOException {
+    int     limit     = DEFAULT_LIMIT;
+    int     mask      = Dictionary.MASK_ALL;
+    short[] blacklist = new short[0];
+    String  file      = null;
+    for (int i = 0; i < args.length; ++i) {
+      if ("-limit".equals(args[i]) && (i + 1 < args.length)) {
+        limit = Integer.parseInt(args[++i]);
+      } else if ("-mask".equals(args[i]) && (i + 1 < args.length)) {
+        mask = (int)Long.decode(args[++i]).longValue();
+      } else if ("-blacklist".equals(args[i]) && (i + 1 < args.length)) {
+        try {
+          blacklist = Word.toMora(args[++i]);
+        } catch (final IllegalArgumentException e) {
+          RhymeBatch.usage("-blacklist: " + e.getMessage());
+          return;
+        }
+      } else {
+        file = args[i];
+      }
+    }
+
+    final InputStream in = (file != null) ? new FileInputStream(file) : System.in;
+    try {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+      new RhymeBatch(new Dictionary.Builder().build(), limit, mask, blacklist).run(reader, writer);
+      writer.flush();
+    } finally {
+      in.close();
+    }
+  }
+
+  // 引数の誤りを行ごとの誤りと同じ形で書き、2 で終わる
+  private static void usage(final String error) throws IOException {
+    final StringBuilder sb = new StringBuilder("{\"error\":");
+    Json.quote(sb, error).append("}\n");
+    final Writer writer = new OutputStreamWriter(System.out, "UTF-8");
+    writer.write(sb.toString());
+    writer.flush();
+    System.err.println("java RhymeBatch [-limit 件数] [-mask 品詞] [-blacklist モーラ] [ファイル]");
+    System.exit(2);
+  }
+
+  /**
+   * in の各行を検索し、結果を out に書く。
+   */
+  public void run(final BufferedReader in, final Writer out) throws IOException {
+    final int threads = Runtime.getRuntime().availableProcessors();
+    final ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try {
+      // 書き出しを待っている行。先頭から順に書き、多くなりすぎたら読むのを待つ。
+      final Deque<Future<String>> pending = new ArrayDeque<Future<String>>();
+      final int window = 4 * threads;
+
+      String line;
+      for (int ln = 1; (line = RhymeBatch.readLine(in, out, pending)) != null; ++ln) {
+        final int    number = ln;
+        final String query  = line.trim();
+        if (query.isEmpty()) {
+          continue;
+        }
+        pending.addLast(exec.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return RhymeBatch.this.query(number, query);
+          }
+        }));
+        // 先頭から、終わったものと多すぎる分を書く
+        while (!pending.isEmpty() && ((pending.size() >= window) || pending.peekFirst().isDone())) {
+          out.write(Dictionary.get(pending.removeFirst()));
+        }
+      }
+      while (!pending.isEmpty()) {
+        out.write(Dictionary.get(pending.removeFirst()));
+      }
+    } finally {
+      exec.shutdown();
+    }
+  }
+
+  // 次の行を読む。すぐに読めなければ、待つ前に書き出しを待っている行を全て書いて送る。
+  private static String readLine(final BufferedReader in, final Writer out, final Deque<Future<String>> pending)
+      throws IOException {
+    if (!in.ready()) {
+      while (!pending.isEmpty()) {
+        out.write(Dictionary.get(pending.removeFirst()));
+      }
+      out.flush();
+    }
+    return in.readLine();
+  }
+
+  // 一行分の結果 (改行を含む)
+  private String query(final int line, final String text) {
+    final StringBuilder out = new StringBuilder();
+    out.append("{\"line\":").append(line);
+    out.append(",\"query\":");
+    Json.quote(out, text);
+
+    short[] query;
+    String  error = null;
+    try {
+      query = Word.toMora(text);
+      if (query.length <= 0) {
+        error = "問い合わせが空です";
+      }
+    } catch (final IllegalArgumentException e) {
+      query = null;
+      error = e.getMessage();
+    }
+    if (error != null) {
+      out.append(",\"error\":");
+      Json.quote(out, error);
+      return out.append("}\n").toString();
+    }
+
+    // 書くのは limit 件だけなので、距離のある検索は上位 limit 件だけを探す (中間韻には距離がない)
+    for (int mode = 0; mode < MODES.length; ++mode) {
+      final Ranking ranking = (mode != Dictionary.INTERNAL)
+        ? dictionary.rank(mode, query, mask, blacklist, Integer.MAX_VALUE, limit)
+        : dictionary.rank(mode, query, mask, blacklist);
+      out.append(",\"").append(MODES[mode]).append("\":");
+      Json.words(out, ranking, 0, limit);
+    }
+    return out.append("}\n").toString();
+  }
+}
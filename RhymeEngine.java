@@ -0,0 +1,256 @@
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * 画面によらない検索の窓口。
+ * 一つの Dictionary を共有し、どのスレッドから呼んでもよい。
+ * 押韻・頭韻・脚韻・中間韻の四つを並行に検索し、結果を CompletableFuture で返す。
+ * 問い合わせの誤りはダイアログではなく Result.getError で知らせる。
+ */
+final class RhymeEngine {
+  // 一度に検索する種類 (Dictionary.STRICT から Dictionary.INTERNAL まで)
+  public static final int MODES = Dictionary.INTERNAL + 1;
+
+  private final Dictionary      dictionary;
+  private final ExecutorService exec;
+
+  // supersede で最後に始めた検索
+  private final AtomicReference<Search> latest = new AtomicReference<Search>();
+
+  public RhymeEngine(final Dictionary dictionary) {
+    this(dictionary, RhymeEngine.newExecutor());
+  }
+
+  public RhymeEngine(final Dictionary dictionary, final ExecutorService exec) {
+    this.dictionary = dictionary;
+    this.exec       = exec;
+  }
+
+  public Dictionary getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * query に韻を踏む単語を、品詞が mask に含まれ blacklist のモーラを含まないものから探す。
+   * query と blacklist は Word.toMora の書式で書く。
+   */
+  public Search search(final String query, final int mask, final String blacklist) {
+    final short[] queryMora;
+    final short[] blacklistMora;
+    try {
+      queryMora     = Word.toMora(query.trim());
+      blacklistMora = Word.toMora(blacklist.trim());
+    } catch (final IllegalArgumentException e) {
+      return new Search(query, e.getMessage());
+    }
+    if (queryMora.length <= 0) {
+      return new Search(query, "問い合わせが空です");
+    }
+
+    final List<CompletableFuture<Ranking>> rankings = new ArrayList<CompletableFuture<Ranking>>();
+    for (int mode = 0; mode < MODES; ++mode) {
+      final int m = mode;
+      final Task<Ranking> task = new Task<Ranking>(new Callable<Ranking>() {
+        @Override
+        public Ranking call() {
+          return dictionary.rank(m, queryMora, mask, blacklistMora);
+        }
+      });
+      exec.execute(task);
+      rankings.add(task);
+    }
+    return new Search(query, rankings);
+  }
+
+  /**
+   * search と同じだが、前回 supersede で始めた検索がまだ終わっていなければ取り消す。
+   * 入力のたびに検索し直す画面のように、最新の問い合わせの結果だけが要るときに使う。
+   */
+  public Search supersede(final String query, final int mask, final String blacklist) {
+    final Search search = this.search(query, mask, blacklist);
+    final Search previous = latest.getAndSet(search);
+    if (previous != null) {
+      previous.cancel();
+    }
+    return search;
+  }
+
+  public void shutdown() {
+    exec.shutdown();
+  }
+
+  private static ExecutorService newExecutor() {
+    return Executors.newFixedThreadPool(Math.max(MODES, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final Thread thread = new Thread(r, "RhymeEngine");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * 取り消すと実行中のスレッドに割り込む CompletableFuture。
+   * CompletableFuture.supplyAsync の結果は取り消しても実行中の処理が止まらないので、
+   * 割り込みを Dictionary.checkInterrupted で見て木を辿るのをやめさせる。
+   */
+  private static final class Task<T> extends CompletableFuture<T> implements Runnable {
+    private final Callable<T> callable;
+
+    // 実行中のスレッド (cancel と run の終わりで排他する)
+    private Thread runner;
+
+    public Task(final Callable<T> callable) {
+      this.callable = callable;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        if (this.isDone()) {
+          return; // 始まる前に取り消された
+        }
+        runner = Thread.currentThread();
+      }
+      try {
+        this.complete(callable.call());
+      } catch (final Throwable e) {
+        this.completeExceptionally(e);
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        Thread.interrupted(); // スレッドを使い回すので、遅れて届いた割り込みを残さない
+      }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      final boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled && mayInterruptIfRunning) {
+        synchronized (this) {
+          if (runner != null) {
+            runner.interrupt();
+          }
+        }
+      }
+      return cancelled;
+    }
+  }
+
+  /**
+   * 実行中の検索。種類ごとの結果と、それらをまとめた結果を待てる。
+   */
+  public static final class Search {
+    private final String                           query;
+    private final List<CompletableFuture<Ranking>> rankings;
+    private final CompletableFuture<Result>        result;
+
+    // 問い合わせの誤り
+    private Search(final String query, final String error) {
+      this.query    = query;
+      this.rankings = new ArrayList<CompletableFuture<Ranking>>();
+      for (int mode = 0; mode < MODES; ++mode) {
+        final CompletableFuture<Ranking> future = new CompletableFuture<Ranking>();
+        future.completeExceptionally(new IllegalArgumentException(error));
+        rankings.add(future);
+      }
+      this.result = CompletableFuture.completedFuture(new Result(query, null, error));
+    }
+
+    private Search(final String query, final List<CompletableFuture<Ranking>> rankings) {
+      this.query    = query;
+      this.rankings = rankings;
+
+      // 全ての種類が揃ったらまとめる。検索中に生じた例外も誤りとして返す。
+      final CompletableFuture<?>[] all = rankings.toArray(new CompletableFuture<?>[rankings.size()]);
+      this.result = CompletableFuture.allOf(all).handle(new BiFunction<Void, Throwable, Result>() {
+        @Override
+        public Result apply(final Void value, final Throwable error) {
+          if (error != null) {
+            final Throwable cause = (error.getCause() != null) ? error.getCause() : error;
+            return new Result(query, null, (cause.getMessage() != null) ? cause.getMessage() : cause.toString());
+          }
+          final Ranking[] array = new Ranking[MODES];
+          for (int mode = 0; mode < MODES; ++mode) {
+            array[mode] = Search.this.rankings.get(mode).join();
+          }
+          return new Result(query, array, null);
+        }
+      });
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    // mode (Dictionary.STRICT から Dictionary.INTERNAL まで) の結果
+    public CompletableFuture<Ranking> get(final int mode) {
+      return rankings.get(mode);
+    }
+
+    public CompletableFuture<Result> result() {
+      return result;
+    }
+
+    /**
+     * 検索を取り消す。まだ始まっていない種類は実行されず、実行中の種類は木を辿るのをやめる。
+     * 結果は CancellationException で終わる。
+     */
+    public void cancel() {
+      result.cancel(false);
+      for (final CompletableFuture<Ranking> future : rankings) {
+        future.cancel(true);
+      }
+    }
+
+    public boolean isCancelled() {
+      for (final CompletableFuture<Ranking> future : rankings) {
+        if (future.isCancelled()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * 検索の結果。問い合わせに誤りがあれば getError が理由を返し、結果は無い。
+   */
+  public static final class Result {
+    private final String    query;
+    private final Ranking[] rankings;
+    private final String    error;
+
+    private Result(final String query, final Ranking[] rankings, final String error) {
+      this.query    = query;
+      this.rankings = rankings;
+      this.error    = error;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    public boolean isError() {
+      return error != null;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public Ranking get(final int mode) {
+      return rankings[mode];
+    }
+  }
+}
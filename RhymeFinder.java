@@ -1,73 +1,127 @@
+import java.awt.Color;
+import java.awt.Component;
 import java.awt.Container;
+import java.awt.Font;
+import java.awt.Graphics;
 import java.awt.GridLayout;
 import java.awt.BorderLayout;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListModel;
 import javax.swing.JPanel;
 import javax.swing.JFrame;
 import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JCheckBox;
 import javax.swing.JTextField;
-import javax.swing.JEditorPane;
 import javax.swing.JScrollPane;
+import javax.swing.ListCellRenderer;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
 
 //<applet code="RhymeFinder$Applet.class" archive="rhyme.jar" width="100" height="50"></applet>
 public final class RhymeFinder extends JFrame {
+  // 入力が止まってから検索するまでの時間 (ミリ秒)
+  private static final int DELAY = 200;
 
   private final JTextField queryMora = new JTextField();
   private final JTextField blacklist = new JTextField();
 
-  private final JEditorPane strict   = new JEditorPane("text/html", "");
-  private final JEditorPane head     = new JEditorPane("text/html", "");
-  private final JEditorPane tail     = new JEditorPane("text/html", "");
-  private final JEditorPane internal = new JEditorPane("text/html", "");
+  // 結果は見えている行だけを RankingListModel から取り出して描く
+  private final JList<Word> strict   = new ResultList();
+  private final JList<Word> head     = new ResultList();
+  private final JList<Word> tail     = new ResultList();
+  private final JList<Word> internal = new ResultList();
+
+  // 各欄の見出し (種類と件数)
+  private final JLabel strictTitle   = new JLabel("押韻");
+  private final JLabel headTitle     = new JLabel("頭韻");
+  private final JLabel tailTitle     = new JLabel("脚韻");
+  private final JLabel internalTitle = new JLabel("中間韻");
 
   private final JCheckBox[] features = new JCheckBox[Dictionary.NAMES.length];
 
-  private final Dictionary dictionary = new Dictionary.Builder().build();
+  private final RhymeEngine engine = new RhymeEngine(new Dictionary.Builder().build());
+
+  // 検索結果は EDT でだけ読み書きする
+  private Ranking strictResult;
+  private Ranking headResult;
+  private Ranking tailResult;
+  private Ranking internalResult;
+
+  // 強調する品詞 (チェックボックスの状態)
+  private int feature;
 
-  private Word[] strictResult;
-  private Word[] headResult;
-  private Word[] tailResult;
-  private Word[] internalResult;
+  // 最後に始めた検索。これより前の検索の結果は表示しない。EDT でだけ読み書きする。
+  private RhymeEngine.Search search;
 
-  private ExecutorService exec = Executors.newFixedThreadPool(3);
+  // 問い合わせの文字の色 (誤りを赤くしたのを戻すのに使う)
+  private final Color queryForeground = queryMora.getForeground();
 
   private RhymeFinder(final boolean isApplet) {
     super("RhymeFinder");
     setDefaultCloseOperation(isApplet ? JFrame.HIDE_ON_CLOSE : JFrame.EXIT_ON_CLOSE);
 
+    // 入力のたびに待ち直し、DELAY だけ止まったら検索する
+    final Timer typing = new Timer(DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(final ActionEvent e) {
+        findRhyme(false);
+      }
+    });
+    typing.setRepeats(false);
+
+    final DocumentListener typeAction = new DocumentListener() {
+      @Override
+      public void insertUpdate(final DocumentEvent e) {
+        typing.restart();
+      }
+
+      @Override
+      public void removeUpdate(final DocumentEvent e) {
+        typing.restart();
+      }
+
+      @Override
+      public void changedUpdate(final DocumentEvent e) {
+      }
+    };
+
+    // Enter なら待たずに検索し、問い合わせの誤りをダイアログで知らせる
     final ActionListener findAction = new ActionListener() {
       @Override
       public void actionPerformed(final ActionEvent e) {
-        if (strict.isEnabled() && head.isEnabled() && tail.isEnabled() && internal.isEnabled()) {
-          strict  .setEnabled(false);
-          head    .setEnabled(false);
-          tail    .setEnabled(false);
-          internal.setEnabled(false);
-          repaint();
-          findRhyme();
-          showResult();
-        }
+        typing.stop();
+        findRhyme(true);
       }
     };
 
     final ActionListener showAction = new ActionListener() {
       @Override
       public void actionPerformed(final ActionEvent e) {
-        showResult();
+        feature = getFeature();
+        strict  .repaint();
+        head    .repaint();
+        tail    .repaint();
+        internal.repaint();
       }
     };
 
     final JPanel north = new JPanel(new GridLayout(1, 2));
     {
+      // 除くモーラは木を辿る途中で除くので、変えたら検索し直す
       queryMora.addActionListener(findAction);
-      blacklist.addActionListener(showAction);
+      blacklist.addActionListener(findAction);
+      queryMora.getDocument().addDocumentListener(typeAction);
+      blacklist.getDocument().addDocumentListener(typeAction);
 
       north.add(queryMora);
       north.add(blacklist);
@@ -75,23 +129,10 @@ public final class RhymeFinder extends JFrame {
 
     final JPanel center = new JPanel(new GridLayout(1, 4));
     {
-      strict  .setEditable(false);
-      head    .setEditable(false);
-      tail    .setEditable(false);
-      internal.setEditable(false);
-
-      center.add(new JScrollPane(strict,
-        JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
-        JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED));
-      center.add(new JScrollPane(head,
-        JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
-        JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED));
-      center.add(new JScrollPane(tail,
-        JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
-        JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED));
-      center.add(new JScrollPane(internal,
-        JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
-        JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED));
+      center.add(this.newPane(strict  , strictTitle  ));
+      center.add(this.newPane(head    , headTitle    ));
+      center.add(this.newPane(tail    , tailTitle    ));
+      center.add(this.newPane(internal, internalTitle));
     }
 
     final JPanel south = new JPanel(new GridLayout(8, 4));
@@ -111,26 +152,74 @@ public final class RhymeFinder extends JFrame {
     pack();
   }
 
-  private void findRhyme() {
+  // 結果の欄。行の高さを固定し、JList が全ての行を測らないようにする。
+  private JScrollPane newPane(final JList<Word> list, final JLabel title) {
+    final WordRenderer renderer = new WordRenderer();
+    list.setCellRenderer(renderer);
+    list.setFixedCellHeight(renderer.getPreferredSize().height);
+    list.setFixedCellWidth(1); // 欄の幅に合わせる
+    final JScrollPane pane = new JScrollPane(list,
+      JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
+      JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+    pane.setColumnHeaderView(title);
+    return pane;
+  }
+
+  // 四種類の検索を engine で並行に行い、揃ったら EDT で表示する。
+  // 前の検索がまだ終わっていなければ取り消す。interactive なら問い合わせの誤りをダイアログで知らせる。
+  private void findRhyme(final boolean interactive) {
     final String queryText = this.queryMora.getText().trim();
     if (queryText.isEmpty()) {
+      if (this.search != null) {
+        this.search.cancel();
+        this.search = null;
+      }
+      this.clearResult();
+      this.showResult();
       return;
     }
 
-    final Mora[] queryMora = Word.toMora(queryText);
-    if (queryMora.length <= 0) {
-      return;
-    }
-
-    final Word[] strictResult   = dictionary.match        (queryMora);
-    final Word[] headResult     = dictionary.matchPrefix  (queryMora);
-    final Word[] tailResult     = dictionary.matchPostfix (queryMora);
-    final Word[] internalResult = dictionary.matchInternal(queryMora);
+    strict  .setEnabled(false);
+    head    .setEnabled(false);
+    tail    .setEnabled(false);
+    internal.setEnabled(false);
 
-    this.strictResult   = strictResult;
-    this.tailResult     = tailResult;
-    this.headResult     = headResult;
-    this.internalResult = internalResult;
+    final RhymeEngine.Search search = engine.supersede(queryText, Dictionary.MASK_ALL, this.blacklist.getText());
+    this.search = search;
+    search.result().whenComplete(new BiConsumer<RhymeEngine.Result, Throwable>() {
+      @Override
+      public void accept(final RhymeEngine.Result result, final Throwable error) {
+        if (error != null) {
+          return; // 新しい検索に取って代わられた
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            if (RhymeFinder.this.search != search) {
+              return; // 表示する前に新しい検索が始まった
+            }
+            RhymeFinder.this.search = null;
+            if (result.isError()) {
+              queryMora.setForeground(Color.RED);
+              queryMora.setToolTipText(result.getError());
+              if (interactive) {
+                JOptionPane.showMessageDialog(RhymeFinder.this,
+                  result.getError(), "検索できませんでした", JOptionPane.ERROR_MESSAGE);
+              }
+              clearResult();
+            } else {
+              queryMora.setForeground(queryForeground);
+              queryMora.setToolTipText(null);
+              strictResult   = result.get(Dictionary.STRICT  );
+              headResult     = result.get(Dictionary.HEAD    );
+              tailResult     = result.get(Dictionary.TAIL    );
+              internalResult = result.get(Dictionary.INTERNAL);
+            }
+            showResult();
+          }
+        });
+      }
+    });
   }
 
   private int getFeature() {
@@ -143,124 +232,113 @@ public final class RhymeFinder extends JFrame {
     return feature;
   }
 
-  private void showResult() {
-    final Mora[] blacklist = Word.toMora(this.blacklist.getText().trim());
-    final int feature = this.getFeature();
+  // 前の問い合わせの結果を残さない
+  private void clearResult() {
+    strictResult   = null;
+    headResult     = null;
+    tailResult     = null;
+    internalResult = null;
+  }
 
-    final String beginHtml = "<html><head></head><body><dl>";
-    final String endHtml = "</dl></body></html>";
+  // 結果を欄に載せる。行を取り出すのは描くときなので、ここでは件数しか数えない。
+  private void showResult() {
+    RhymeFinder.show(strict  , strictTitle  , "押韻"  , strictResult  );
+    RhymeFinder.show(head    , headTitle    , "頭韻"  , headResult    );
+    RhymeFinder.show(tail    , tailTitle    , "脚韻"  , tailResult    );
+    RhymeFinder.show(internal, internalTitle, "中間韻", internalResult);
+  }
 
-    // 押韻
-    if (strictResult != null) {
-      exec.execute(new Runnable() {
-        @Override
-        public void run() {
-          final StringBuilder builder = new StringBuilder(beginHtml);
-          for (final Word word : strictResult) {
-            if (!word.contains(blacklist)) {
-              builder.append(word.toHTML(feature));
-            }
-          }
-          builder.append(endHtml);
-          SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-              strict.setEnabled(true);
-              strict.setText(builder.toString());
-              strict.setCaretPosition(0);
-              strict.repaint();
-            }
-          });
-        }
-      });
+  private static void show(final JList<Word> list, final JLabel title, final String name, final Ranking result) {
+    if (result != null) {
+      if (!(list.getModel() instanceof RankingListModel) || (((RankingListModel)list.getModel()).getRanking() != result)) {
+        list.setModel(new RankingListModel(result));
+        list.ensureIndexIsVisible(0);
+      }
+      title.setText(name + " " + result.size() + "件");
     } else {
-      strict.setEnabled(true);
+      if (list.getModel().getSize() > 0) {
+        list.setModel(new DefaultListModel<Word>());
+      }
+      title.setText(name + " 0件");
     }
+    list.setEnabled(true);
+  }
 
-    // 頭韻
-    if (headResult != null) {
-      exec.execute(new Runnable() {
-        @Override
-        public void run() {
-          final StringBuilder builder = new StringBuilder(beginHtml);
-          for (final Word word : headResult) {
-            if (!word.contains(blacklist)) {
-              builder.append(word.toHTML(feature));
-            }
-          }
-          builder.append(endHtml);
-          SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-              head.setEnabled(true);
-              head.setText(builder.toString());
-              head.setCaretPosition(0);
-              head.repaint();
-            }
-          });
-        }
-      });
-    } else {
-      head.setEnabled(true);
+  /**
+   * 結果の欄。描く時間を Metrics の render に記録する。
+   * 見えている行を Ranking.page で取り出して WordRenderer で描くまでが含まれる。
+   */
+  private static final class ResultList extends JList<Word> {
+    private static final long serialVersionUID = 1L;
+
+    public ResultList() {
+      super(new DefaultListModel<Word>());
     }
 
-    // 脚韻
-    if (tailResult != null) {
-      exec.execute(new Runnable() {
-        @Override
-        public void run() {
-          final StringBuilder builder = new StringBuilder(beginHtml);
-          for (final Word word : tailResult) {
-            if (!word.contains(blacklist)) {
-              builder.append(word.toHTML(feature));
-            }
-          }
-          builder.append(endHtml);
-          SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-              tail.setEnabled(true);
-              tail.setText(builder.toString());
-              tail.setCaretPosition(0);
-              tail.repaint();
-            }
-          });
-        }
-      });
-    } else {
-      tail.setEnabled(true);
+    @Override
+    protected void paintComponent(final Graphics g) {
+      final long start = Metrics.start();
+      super.paintComponent(g);
+      Metrics.INSTANCE.render(start);
     }
+  }
 
-    // 中間韻
-    if (internalResult != null) {
-      exec.execute(new Runnable() {
-        @Override
-        public void run() {
-          final StringBuilder builder = new StringBuilder(beginHtml);
-          for (final Word word : internalResult) {
-            if (!word.contains(blacklist)) {
-              builder.append(word.toHTML(feature));
-            }
-          }
-          builder.append(endHtml);
-          SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-              internal.setEnabled(true);
-              internal.setText(builder.toString());
-              internal.setCaretPosition(0);
-              internal.repaint();
-            }
-          });
-        }
-      });
-    } else {
-      internal.setEnabled(true);
+  /**
+   * 一行に読みと表記を描く。強調する品詞の単語は背景を黄色にする。
+   */
+  private final class WordRenderer extends JPanel implements ListCellRenderer<Word> {
+    private static final long serialVersionUID = 1L;
+
+    private final JLabel kana  = new JLabel(" ");
+    private final JLabel words = new JLabel(" ");
+
+    public WordRenderer() {
+      super(new GridLayout(2, 1));
+      kana .setFont(kana.getFont().deriveFont(Font.ITALIC));
+      words.setFont(words.getFont().deriveFont(Font.PLAIN));
+      words.setBorder(BorderFactory.createEmptyBorder(0, 32, 0, 0));
+      add(kana);
+      add(words);
+      setBorder(BorderFactory.createEmptyBorder(1, 4, 1, 4));
+    }
+
+    @Override
+    public Component getListCellRendererComponent(final JList<? extends Word> list, final Word word,
+        final int index, final boolean isSelected, final boolean cellHasFocus) {
+      kana .setText(word.getKana ());
+      words.setText(word.getWords());
+      if (isSelected) {
+        setBackground(list.getSelectionBackground());
+      } else if ((word.getFeature() & feature) != 0) {
+        setBackground(Color.YELLOW);
+      } else {
+        setBackground(list.getBackground());
+      }
+      final Color foreground = isSelected ? list.getSelectionForeground() : list.getForeground();
+      kana .setForeground(foreground);
+      words.setForeground(foreground);
+      setEnabled(list.isEnabled());
+      return this;
     }
   }
 
+  // 引数が --server [ポート番号] なら RhymeServer を、--batch ... なら RhymeBatch を、
+  // --lyrics ... なら LyricsAnalyzer を画面を出さずに起動する
   public static void main(String[] args) throws Exception {
+    if ((args.length > 0) && "--server".equals(args[0])) {
+      RhymeServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if ((args.length > 0) && "--batch".equals(args[0])) {
+      RhymeBatch.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if ((args.length > 0) && "--lyrics".equals(args[0])) {
+      LyricsAnalyzer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     showFrame(new RhymeFinder(false));
+    Metrics.register(); // jconsole で RhymeFinder:type=Metrics を見る
   }
 
   public static final class Applet extends java.applet.Applet {
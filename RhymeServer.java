@@ -0,0 +1,203 @@
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.InvocationTargetException;
+
+import java.util.Map;
+import java.util.HashMap;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 検索を HTTP で提供する。同じ計算機の他の道具から使うためのもの。
+ *
+ *   GET /rhyme?q=とうきょう&mode=tail&mask=0xf&blacklist=ん&offset=0&limit=50&maxDistance=8
+ *
+ *   q           問い合わせ (Word.toMora の書式)
+ *   mode        strict / head / tail / internal / align (既定は strict)
+ *   mask        品詞 (Dictionary.MASK_* の論理和。既定は全て)
+ *   blacklist   このモーラを含む単語を除く (Word.toMora の書式)
+ *   offset      何番目から返すか (既定は 0)
+ *   limit       何個返すか (既定は 50)
+ *   maxDistance 距離の上限 (省略すれば制限しない。半韻では Dictionary.ALIGN_DISTANCE)
+ *
+ * 結果は {"query":…,"mode":…,"total":…,"offset":…,"words":[…]} の JSON で返す。
+ * 誤りは {"error":…} と 400 で返す。
+ * 一つの Dictionary を全ての要求で共有し、要求ごとに仮想スレッドで処理する。
+ */
+final class RhymeServer {
+  private static final String[] MODES = { "strict", "head", "tail", "internal", "align" };
+
+  private static final int DEFAULT_PORT  = 8080;
+  private static final int DEFAULT_LIMIT = 50;
+
+  private final Dictionary      dictionary;
+  private final HttpServer      server;
+  private final ExecutorService exec;
+
+  public RhymeServer(final Dictionary dictionary, final InetSocketAddress address) throws IOException {
+    this.dictionary = dictionary;
+    this.exec       = RhymeServer.newExecutor();
+    this.server     = HttpServer.create(address, 0);
+    server.setExecutor(exec);
+    server.createContext("/rhyme", new HttpHandler() {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+        RhymeServer.this.handle(exchange);
+      }
+    });
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+    exec.shutdown();
+  }
+
+  // 引数: [ポート番号]。この計算機からの接続だけを受け付ける。
+  public static void main(final String[] args) throws IOException {
+    final int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    final RhymeServer server = new RhymeServer(new Dictionary.Builder().build(),
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    server.start();
+    Metrics.register();
+    System.err.printf("http://localhost:%d/rhyme\n", port);
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        RhymeServer.send(exchange, 405, RhymeServer.error("GET だけを受け付けます"));
+        return;
+      }
+      RhymeServer.send(exchange, 200, this.query(RhymeServer.parameters(exchange.getRequestURI().getRawQuery())));
+    } catch (final IllegalArgumentException e) {
+      RhymeServer.send(exchange, 400, RhymeServer.error(e.getMessage()));
+    } catch (final RuntimeException e) {
+      RhymeServer.send(exchange, 500, RhymeServer.error(e.toString()));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private String query(final Map<String, String> parameters) {
+    final String q = RhymeServer.get(parameters, "q", "").trim();
+    final short[] query = Word.toMora(q);
+    if (query.length <= 0) {
+      throw new IllegalArgumentException("問い合わせが空です");
+    }
+    final int     mode      = RhymeServer.mode(RhymeServer.get(parameters, "mode", MODES[Dictionary.STRICT]));
+    final int     mask      = RhymeServer.number(parameters, "mask", Dictionary.MASK_ALL);
+    final short[] blacklist = Word.toMora(RhymeServer.get(parameters, "blacklist", "").trim());
+    final int     offset    = Math.max(0, RhymeServer.number(parameters, "offset", 0));
+    final int     limit     = Math.max(0, RhymeServer.number(parameters, "limit", DEFAULT_LIMIT));
+
+    final Ranking ranking;
+    if (parameters.containsKey("maxDistance")) {
+      ranking = dictionary.rank(mode, query, mask, blacklist, RhymeServer.number(parameters, "maxDistance", 0), 0);
+    } else {
+      ranking = dictionary.rank(mode, query, mask, blacklist);
+    }
+
+    final StringBuilder out = new StringBuilder();
+    out.append("{\"query\":");
+    Json.quote(out, q);
+    out.append(",\"mode\":");
+    Json.quote(out, MODES[mode]);
+    out.append(",\"total\":").append(ranking.size());
+    out.append(",\"offset\":").append(offset);
+    out.append(",\"words\":");
+    Json.words(out, ranking, offset, limit);
+    return out.append('}').toString();
+  }
+
+  private static int mode(final String name) {
+    for (int mode = 0; mode < MODES.length; ++mode) {
+      if (MODES[mode].equals(name)) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("mode: " + name);
+  }
+
+  // 10 進数か 0x で始まる 16 進数
+  private static int number(final Map<String, String> parameters, final String name, final int value) {
+    final String s = parameters.get(name);
+    if (s == null) {
+      return value;
+    }
+    try {
+      return (int)Long.decode(s.trim()).longValue();
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException(name + ": " + s);
+    }
+  }
+
+  private static String get(final Map<String, String> parameters, final String name, final String value) {
+    final String s = parameters.get(name);
+    return (s != null) ? s : value;
+  }
+
+  private static Map<String, String> parameters(final String query) {
+    final Map<String, String> parameters = new HashMap<String, String>();
+    if (query == null) {
+      return parameters;
+    }
+    try {
+      for (final String pair : query.split("&")) {
+        final int i = pair.indexOf('=');
+        if (i < 0) {
+          parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+        } else {
+          parameters.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"), URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+        }
+      }
+    } catch (final UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    return parameters;
+  }
+
+  private static String error(final String message) {
+    return Json.quote(new StringBuilder("{\"error\":"), String.valueOf(message)).append('}').toString();
+  }
+
+  private static void send(final HttpExchange exchange, final int status, final String body) throws IOException {
+    final byte[] bytes = body.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    final OutputStream out = exchange.getResponseBody();
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+
+  // 要求ごとに仮想スレッドを使う。仮想スレッドの無い JDK では、CPU の数に合わせたスレッドプールで代える。
+  private static ExecutorService newExecutor() {
+    try {
+      final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService)method.invoke(null);
+    } catch (final NoSuchMethodException e) {
+    } catch (final IllegalAccessException e) {
+    } catch (final InvocationTargetException e) {
+      // プレビュー機能を有効にしていない JDK 19/20
+    }
+    return Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors());
+  }
+}
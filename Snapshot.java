@@ -0,0 +1,412 @@
+import java.net.URL;
+import java.net.URISyntaxException;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.concurrent.ExecutorService;
+
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.FileChannel;
+
+/**
+ * 辞書を変換した二進形式。
+ * 起動のたびにテキストの辞書を解析する代わりに、これを写像して読み込む。
+ *
+ * 形式 (数値は全てビッグエンディアン):
+ *   int       MAGIC
+ *   int       VERSION
+ *   int       品詞の数 (Dictionary.NAMES.length)
+ *   品詞ごとに:
+ *     long      変換した辞書ファイルの大きさ (無ければ -1)
+ *     long      その更新時刻 (無ければ -1)
+ *   品詞ごとに:
+ *     int       単語数 n
+ *     int[n+1]  モーラの開始位置  short[] モーラ
+ *     int[n+1]  読みの開始位置    char[]  読み
+ *     int[n+1]  表記の開始位置    char[]  表記
+ *   int       木の数
+ *   木ごとに:
+ *     int       品詞のまとまり (Dictionary.PARTITIONS の要素)
+ *     前向きと後ろ向きの Trie.Tree (Trie.write)
+ *   short[] と char[] の後ろは 4 バイト境界まで詰める。
+ *
+ * 木の単語の番号は、まとまりに含まれる品詞の単語を品詞の順につなげて整列した (Partition) ときの添字。
+ * 辞書ファイルがファイルとしてある (開発中の作業場所) とき、変えたのに変換し直していなければ、
+ * 読み込むときに大きさか更新時刻が合わないので使わない。
+ * jar の中では辞書ファイルと変換済みの辞書は一緒に詰めたものなので、確かめない。
+ */
+final class Snapshot {
+  public static final String NAME = "rhyme.snapshot";
+
+  private static final int MAGIC   = 0x52484D53; // "RHMS"
+  private static final int VERSION = 4;
+
+  private Snapshot() {
+  }
+
+  // テキストの辞書を変換して書き出す
+  public static void main(final String[] args) throws IOException {
+    final File file = new File((args.length > 0) ? args[0] : "dic/" + NAME);
+    Snapshot.write(file, new Dictionary.Builder().parse());
+  }
+
+  public static void write(final File file, final Word[] words) throws IOException {
+    // 品詞ごとに分ける
+    final int sections = Dictionary.NAMES.length;
+    final int[] counts = new int[sections];
+    for (final Word word : words) {
+      ++counts[Snapshot.section(word)];
+    }
+    final Word[][] table = new Word[sections][];
+    for (int i = 0; i < sections; ++i) {
+      table[i] = new Word[counts[i]];
+      counts[i] = 0;
+    }
+    for (final Word word : words) {
+      final int i = Snapshot.section(word);
+      table[i][counts[i]++] = word;
+    }
+
+    // 品詞のまとまりごとに Partition と同じ順に並べた単語から木を作る
+    final int[]  groups = Dictionary.PARTITIONS;
+    final Trie[] tries  = new Trie[groups.length];
+    for (int g = 0; g < groups.length; ++g) {
+      final List<Word> list = new ArrayList<Word>();
+      for (int i = 0; i < sections; ++i) {
+        if (((1 << i) & groups[g]) != 0) {
+          list.addAll(Arrays.asList(table[i]));
+        }
+      }
+      final Word[] group = list.toArray(new Word[list.size()]);
+      Arrays.sort(group);
+      tries[g] = new Trie.Builder().build(group);
+    }
+
+    int size = 12 + 16 * sections + 4;
+    for (final Trie trie : tries) {
+      size += 4 + trie.bytes();
+    }
+    for (final Word[] section : table) {
+      int mora  = 0;
+      int kana  = 0;
+      int value = 0;
+      for (final Word word : section) {
+        mora  += word.getMora ().length;
+        kana  += word.getKana ().length();
+        value += word.getWords().length();
+      }
+      size += 4 + 3 * 4 * (section.length + 1) + Snapshot.pad(mora) + Snapshot.pad(kana) + Snapshot.pad(value);
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(sections);
+    for (int i = 0; i < sections; ++i) {
+      final File source = Snapshot.file(Dictionary.source(i));
+      buffer.putLong((source != null) ? source.length()       : -1);
+      buffer.putLong((source != null) ? source.lastModified() : -1);
+    }
+    for (final Word[] section : table) {
+      final int count = section.length;
+      buffer.putInt(count);
+
+      int offset = 0;
+      buffer.putInt(offset);
+      for (final Word word : section) {
+        buffer.putInt(offset += word.getMora().length);
+      }
+      for (final Word word : section) {
+        for (final short m : word.getMora()) {
+          buffer.putShort(m);
+        }
+      }
+      Snapshot.align(buffer);
+
+      Snapshot.putStrings(buffer, section, false);
+      Snapshot.putStrings(buffer, section, true);
+    }
+    buffer.putInt(tries.length);
+    for (int g = 0; g < groups.length; ++g) {
+      buffer.putInt(groups[g]);
+      tries[g].write(buffer);
+    }
+
+    final FileOutputStream out = new FileOutputStream(file);
+    try {
+      buffer.flip();
+      final FileChannel channel = out.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * 変換済みの辞書 image (open で開いたもの) から、品詞が mask に含まれる単語を読み込んで分割を作る。
+   * mask が品詞のまとまりと一致すれば、書き出してある木をそのまま使う。
+   * image が null か、形式や辞書ファイルが合わないか、壊れていれば null を返す。
+   * image の位置は変えないので、同じ image から何度でも読める。
+   */
+  public static Partition load(final ByteBuffer image, final int mask, final ExecutorService exec) {
+    if (image == null) {
+      return null;
+    }
+    final ByteBuffer buffer = image.duplicate();
+    final Word[] words;
+    final Trie   trie;
+    try {
+      words = Snapshot.read(buffer, mask);
+      if (words == null) {
+        return null;
+      }
+      trie = Snapshot.readTrie(buffer, mask);
+    } catch (final RuntimeException e) {
+      // 途中で切れていたり、大きさや位置が壊れていたりする
+      System.err.printf("変換済みの辞書が壊れています: %s\n", e);
+      return null;
+    }
+    if ((trie != null) && (trie.size() == words.length)) {
+      return new Partition(words, trie, exec);
+    }
+    return new Partition(words, exec);
+  }
+
+  /**
+   * 変換済みの辞書 image から、品詞が mask に含まれる単語だけを読み込む。
+   * image が null か、形式や辞書ファイルが合わないか、壊れていれば null を返す。
+   */
+  public static Word[] loadWords(final ByteBuffer image, final int mask) {
+    if (image == null) {
+      return null;
+    }
+    try {
+      return Snapshot.read(image.duplicate(), mask);
+    } catch (final RuntimeException e) {
+      System.err.printf("変換済みの辞書が壊れています: %s\n", e);
+    }
+    return null;
+  }
+
+  /**
+   * 変換済みの辞書を開く。ファイルなら写像し、jar の中にあるものは写像できないので読み込む。
+   * 無いか開けなければ null を返す。
+   */
+  static ByteBuffer open(final URL url) {
+    if (url == null) {
+      return null;
+    }
+    try {
+      final File path = Snapshot.file(url);
+      if (path != null) {
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+          final FileChannel channel = file.getChannel();
+          return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+          file.close();
+        }
+      }
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final InputStream in = url.openStream();
+      try {
+        final byte[] chunk = new byte[1 << 16];
+        for (int n; (n = in.read(chunk)) > 0; ) {
+          bytes.write(chunk, 0, n);
+        }
+      } finally {
+        in.close();
+      }
+      return ByteBuffer.wrap(bytes.toByteArray());
+    } catch (final IOException e) {
+      System.err.printf("変換済みの辞書を開けませんでした: %s\n", url);
+    }
+    return null;
+  }
+
+  // 品詞が mask に含まれない節は読み飛ばす
+  public static Word[] read(final ByteBuffer buffer, final int mask) {
+    if ((buffer.remaining() < 12) || (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)
+        || (buffer.getInt() != Dictionary.NAMES.length)) {
+      System.err.printf("変換済みの辞書の形式が違います\n");
+      return null;
+    }
+    final long[] lengths = new long[Dictionary.NAMES.length];
+    final long[] times   = new long[Dictionary.NAMES.length];
+    for (int i = 0; i < lengths.length; ++i) {
+      lengths[i] = buffer.getLong();
+      times  [i] = buffer.getLong();
+    }
+    for (int i = 0; i < lengths.length; ++i) {
+      if (((1 << i) & mask) == 0) {
+        continue;
+      }
+      final File source = Snapshot.file(Dictionary.source(i));
+      if ((source != null) && ((source.length() != lengths[i]) || (source.lastModified() != times[i]))) {
+        System.err.printf("辞書ファイルが変換済みの辞書より新しいので、辞書ファイルを読みます: %s\n", Dictionary.NAMES[i]);
+        return null;
+      }
+    }
+
+    final Word[][] table = new Word[Dictionary.NAMES.length][];
+    int total = 0;
+    for (int i = 0, sections = table.length; i < sections; ++i) {
+      final int feature = 1 << i;
+      final int count = buffer.getInt();
+      if ((feature & mask) == 0) {
+        Snapshot.skipSection(buffer, count);
+        table[i] = new Word[0];
+        continue;
+      }
+
+      final int[] moraOffset = Snapshot.getInts(buffer, count + 1);
+      final short[] mora = Snapshot.getShorts(buffer, moraOffset[count]);
+
+      final int[]  kanaOffset = Snapshot.getInts(buffer, count + 1);
+      final char[] kana       = Snapshot.getChars(buffer, kanaOffset[count]);
+      final int[]  wordOffset = Snapshot.getInts(buffer, count + 1);
+      final char[] word       = Snapshot.getChars(buffer, wordOffset[count]);
+
+      final Word[] section = new Word[count];
+      for (int j = 0; j < count; ++j) {
+        section[j] = new Word(feature,
+          new String(kana, kanaOffset[j], kanaOffset[j+1] - kanaOffset[j]),
+          new String(word, wordOffset[j], wordOffset[j+1] - wordOffset[j]),
+          Arrays.copyOfRange(mora, moraOffset[j], moraOffset[j+1]));
+      }
+      table[i] = section;
+      total += count;
+    }
+
+    final Word[] words = new Word[total];
+    int offset = 0;
+    for (final Word[] section : table) {
+      System.arraycopy(section, 0, words, offset, section.length);
+      offset += section.length;
+    }
+    return words;
+  }
+
+  // mask の木を探して読む。無ければ null を返す。
+  private static Trie readTrie(final ByteBuffer buffer, final int mask) {
+    for (int g = 0, count = buffer.getInt(); g < count; ++g) {
+      if (buffer.getInt() == mask) {
+        return Trie.read(buffer);
+      }
+      Trie.skip(buffer);
+    }
+    return null;
+  }
+
+  /**
+   * url がファイルならその File を返す。jar の中などファイルでなければ null を返す。
+   * 大きさと更新時刻を調べるだけなので、中身は読まない。
+   */
+  static File file(final URL url) {
+    if ((url == null) || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try {
+      return new File(url.toURI());
+    } catch (final URISyntaxException e) {
+      return null;
+    }
+  }
+
+  private static int section(final Word word) {
+    return Integer.numberOfTrailingZeros(word.getFeature());
+  }
+
+  // 二バイトの要素 n 個を 4 バイト境界まで詰めた大きさ
+  static int pad(final int n) {
+    return (2 * n + 3) & ~3;
+  }
+
+  private static void align(final ByteBuffer buffer) {
+    while ((buffer.position() & 3) != 0) {
+      buffer.put((byte)0);
+    }
+  }
+
+  private static void skip(final ByteBuffer buffer, final int n) {
+    buffer.position(buffer.position() + Snapshot.pad(n));
+  }
+
+  // 単語数 count の節のうち、単語数より後ろを読み飛ばす
+  private static void skipSection(final ByteBuffer buffer, final int count) {
+    buffer.position(buffer.position() + 4 * count);
+    Snapshot.skip(buffer, buffer.getInt());
+    for (int k = 0; k < 2; ++k) {
+      buffer.position(buffer.position() + 4 * count);
+      Snapshot.skip(buffer, buffer.getInt());
+    }
+  }
+
+  private static void putStrings(final ByteBuffer buffer, final Word[] section, final boolean value) {
+    int offset = 0;
+    buffer.putInt(offset);
+    for (final Word word : section) {
+      buffer.putInt(offset += (value ? word.getWords() : word.getKana()).length());
+    }
+    for (final Word word : section) {
+      final String s = value ? word.getWords() : word.getKana();
+      for (int i = 0, length = s.length(); i < length; ++i) {
+        buffer.putChar(s.charAt(i));
+      }
+    }
+    Snapshot.align(buffer);
+  }
+
+  static void putInts(final ByteBuffer buffer, final int[] array) {
+    buffer.asIntBuffer().put(array);
+    buffer.position(buffer.position() + 4 * array.length);
+  }
+
+  static void putShorts(final ByteBuffer buffer, final short[] array) {
+    buffer.asShortBuffer().put(array);
+    buffer.position(buffer.position() + Snapshot.pad(array.length));
+  }
+
+  // 壊れた大きさで大きな配列を作らないよう、残りが n バイトあることを確かめる
+  private static void require(final ByteBuffer buffer, final long n) {
+    if ((n < 0) || (n > buffer.remaining())) {
+      throw new BufferUnderflowException();
+    }
+  }
+
+  static short[] getShorts(final ByteBuffer buffer, final int n) {
+    Snapshot.require(buffer, 2L * n);
+    final short[] array = new short[n];
+    buffer.asShortBuffer().get(array);
+    Snapshot.skip(buffer, n);
+    return array;
+  }
+
+  static int[] getInts(final ByteBuffer buffer, final int n) {
+    Snapshot.require(buffer, 4L * n);
+    final int[] array = new int[n];
+    buffer.asIntBuffer().get(array);
+    buffer.position(buffer.position() + 4 * n);
+    return array;
+  }
+
+  private static char[] getChars(final ByteBuffer buffer, final int n) {
+    Snapshot.require(buffer, 2L * n);
+    final char[] array = new char[n];
+    buffer.asCharBuffer().get(array);
+    Snapshot.skip(buffer, n);
+    return array;
+  }
+}
@@ -1,197 +1,730 @@
+import java.nio.ByteBuffer;
+
 import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 final class Trie {
-  private final Node rootNext;
-  private final Node rootPrev;
+  private final Tree rootNext;
+  private final Tree rootPrev;
 
-  private Trie(final Node rootNext, final Node rootPrev) {
+  private Trie(final Tree rootNext, final Tree rootPrev) {
     this.rootNext = rootNext;
     this.rootPrev = rootPrev;
   }
 
-  public Word[] match(final Mora[] query) {
-    final List<Word> list = new ArrayList<Word>();
-    rootNext.collect(query, list);
-    return list.toArray(new Word[list.size()]);
+  // 載っている単語の数
+  public int size() {
+    return rootNext.ids.length;
   }
 
-  public Word[] matchHead(final Mora[] query) {
-    final List<Word> list = new ArrayList<Word>();
-    rootNext.collectHead(query, list);
-    return list.toArray(new Word[list.size()]);
+  /**
+   * query に合う単語のうち、品詞が mask に含まれ、blacklist (Mora.set) のモーラを含まないものの番号
+   * (Trie.Builder.build に渡した配列の添字) を返す。
+   * blacklist のモーラに当たる枝は辿らないので、除かれる単語は集めずに済む。
+   */
+  public int[] collect(final int mode, final short[] query, final int mask, final long[] blacklist, final WordTable table) {
+    final Collector collector = new Collector(mode, query, mask, blacklist, table);
+    this.root(mode).visit(collector, Tree.ROOT, 0, 0);
+    collector.report();
+    return collector.toArray();
   }
 
-  public Word[] matchTail(final Mora[] query) {
-    final List<Word> list = new ArrayList<Word>();
-    rootPrev.collectTail(query, list);
-    return list.toArray(new Word[list.size()]);
+  /**
+   * 子音の距離の和が maxDistance 以下の単語を、距離の小さいほうから高々 limit 個集める
+   * (limit が 0 以下なら個数は制限しない)。
+   * 辿りながら距離の下限を積み上げ、maxDistance や limit 番目の距離を超えた部分木は辿らない。
+   * 戻り値は Ranking の鍵 ((距離 << 32) | 順位) で、順不同。
+   */
+  public long[] search(final int mode, final short[] query, final int mask, final long[] blacklist,
+      final int maxDistance, final int limit, final WordTable table) {
+    final Best best = new Best(mode, query, mask, blacklist, maxDistance, limit, table);
+    this.root(mode).visit(best, Tree.ROOT, 0, 0);
+    best.report();
+    return best.toArray();
   }
 
-  private static final class Node {
-    private final Word[] array;
-    private final Node[] next;
+  /**
+   * 長さの違いを許した整列の費用 (Word.distanceAlign) が maxDistance 以下の単語を、
+   * 費用の小さいほうから高々 limit 個集める。
+   * 前向きの木を辿りながら整列の表を一行ずつ進め、行の最小値が上限を超えた部分木は辿らない。
+   */
+  public long[] align(final short[] query, final int mask, final long[] blacklist,
+      final int maxDistance, final int limit, final WordTable table) {
+    final Best best = new Best(Dictionary.ALIGN, query, mask, blacklist, maxDistance, limit, table);
+    final int[] row = new int[query.length + 1];
+    for (int j = 0, length = query.length; j <= length; ++j) {
+      row[j] = j * Word.GAP;
+    }
+    rootNext.align(best, Tree.ROOT, row, 0);
+    best.report();
+    return best.toArray();
+  }
 
-    public Node(final Word[] array, final Node[] next) {
-      this.array = array;
-      this.next  = next;
+  /**
+   * 問い合わせを一モーラずつ伸ばしたり縮めたりしながら collect するカーソル。
+   * 押韻・頭韻・脚韻 (Dictionary.STRICT, HEAD, TAIL) だけに使える。
+   * 脚韻では後ろ向きの木を辿るので、push は問い合わせの末尾ではなく先頭にモーラを加える。
+   */
+  public Cursor cursor(final int mode, final int mask, final long[] blacklist) {
+    switch (mode) {
+    case Dictionary.STRICT:
+    case Dictionary.HEAD  :
+    case Dictionary.TAIL  : return new Cursor(this.root(mode), mode, mask, blacklist);
+    default               : throw new IllegalArgumentException("mode: " + mode);
     }
+  }
 
-    public Word[] array() {
-      return array;
+  private Tree root(final int mode) {
+    return (mode == Dictionary.TAIL) ? rootPrev : rootNext;
+  }
+
+  /**
+   * 問い合わせの長さごとに、そこまでのモーラに合った節点 (前線) を覚えておく。
+   * push は今の前線の子を一段だけ調べ、pop は一つ前の前線に戻るだけなので、
+   * 問い合わせを一モーラ変えるたびに根から辿り直さずに済む。
+   * 一つのスレッドからだけ使う。
+   */
+  public static final class Cursor {
+    private final Tree   tree;
+    private final int    mode;
+    private final int    mask;
+    private final long[] blacklist;
+
+    private short[] moras  = new short[8];        // push した順のモーラ
+    private int[][] nodes  = new int[moras.length + 1][];
+    private int[]   sizes  = new int[moras.length + 1]; // 長さ i の前線は nodes[i][0..sizes[i])
+    private int     length = 0;
+
+    private Cursor(final Tree tree, final int mode, final int mask, final long[] blacklist) {
+      this.tree      = tree;
+      this.mode      = mode;
+      this.mask      = mask;
+      this.blacklist = blacklist;
+      this.nodes[0]  = new int[] { Tree.ROOT };
+      this.sizes[0]  = ((tree.mask[Tree.ROOT] & mask) != 0) ? 1 : 0;
     }
 
-    public void collect(final Mora[] query, final List<Word> list) {
-      this.collect(query, 0, list);
+    public int getMode() {
+      return mode;
     }
 
-    private void collect(final Mora[] query, final int i, final List<Word> list) {
-      if (i >= query.length) {
-        // マッチしたので回収
-        list.addAll(Arrays.asList(array));
-        return;
+    public int length() {
+      return length;
+    }
+
+    // 今の問い合わせ (脚韻でも問い合わせの順に並べる)
+    public short[] query() {
+      final short[] query = Arrays.copyOf(moras, length);
+      if (mode == Dictionary.TAIL) {
+        for (int i = 0, j = length - 1; i < j; ++i, --j) {
+          final short t = query[i];
+          query[i] = query[j];
+          query[j] = t;
+        }
+      }
+      return query;
+    }
+
+    // 合う節点が残っていなければ、これ以上伸ばしても何も見つからない
+    public boolean isEmpty() {
+      return sizes[length] == 0;
+    }
+
+    /**
+     * 問い合わせにモーラを一つ加える (脚韻では先頭に、それ以外では末尾に)。
+     * 母音が任意 (Mora.VOWEL_ANY) のモーラでは、前線は合う母音の数だけ広がる。
+     */
+    public void push(final short mora) {
+      if (length + 1 >= nodes.length) {
+        moras = Arrays.copyOf(moras, moras.length * 2);
+        nodes = Arrays.copyOf(nodes, moras.length + 1);
+        sizes = Arrays.copyOf(sizes, moras.length + 1);
       }
+      moras[length] = mora;
 
-      final Mora.Vowel v = query[i].getVowel();
-      if (Mora.Vowel.any.equals(v)) {
-        for (final Node node : next) {
-          if (node != null) {
-            node.collect(query, i+1, list);
+      final int[] frontier = nodes[length];
+      final int   count    = sizes[length];
+      final int   v        = Mora.vowel(mora);
+      final int   c        = Mora.consonant(mora);
+      final short[] keys = tree.keys;
+      ++length;
+      sizes[length] = 0;
+      for (int j = 0; j < count; ++j) {
+        final int n    = frontier[j];
+        final int from = tree.child[n];
+        final int to   = tree.child[n+1];
+        // Tree.visit と同じ順に子を選ぶので、collect の結果の順も Trie.collect と変わらない
+        if (v != Mora.VOWEL_ANY) {
+          for (int k = Tree.lowerBound(keys, from, to, Mora.key(0, v)), end = Tree.lowerBound(keys, k, to, Mora.key(0, v+1)); k < end; ++k) {
+            this.add(k);
+          }
+        } else if (c != Mora.CONSONANT_ANY) {
+          for (int w = 0; w < Mora.VOWEL_COUNT; ++w) {
+            final int k = Arrays.binarySearch(keys, from, to, Mora.key(c, w));
+            if (k >= 0) {
+              this.add(k);
+            }
+          }
+        } else {
+          for (int k = from; k < to; ++k) {
+            this.add(k);
           }
         }
+      }
+      Metrics.INSTANCE.visited(sizes[length]);
+    }
+
+    // 最後に加えたモーラを取り除く
+    public void pop() {
+      if (length <= 0) {
+        throw new IllegalStateException("問い合わせが空です");
+      }
+      --length;
+    }
+
+    // 前線に子 k を加える。品詞や除くモーラで落ちる枝は加えない。
+    private void add(final int k) {
+      if (((tree.mask[k] & mask) == 0) || Mora.intersects(blacklist, tree.keys[k])) {
+        return;
+      }
+      int[] next = nodes[length];
+      if (next == null) {
+        next = nodes[length] = new int[16];
+      } else if (sizes[length] >= next.length) {
+        next = nodes[length] = Arrays.copyOf(next, next.length * 2);
+      }
+      next[sizes[length]++] = k;
+    }
+
+    /**
+     * 今の問い合わせで Trie.collect と同じものを返す。前線から先だけを辿る。
+     */
+    public int[] collect(final WordTable table) {
+      final Collector collector = new Collector(mode, this.query(), mask, blacklist, table);
+      final int[] frontier = nodes[length];
+      for (int j = 0, count = sizes[length]; j < count; ++j) {
+        tree.visit(collector, frontier[j], length, 0);
+      }
+      collector.report();
+      return collector.toArray();
+    }
+  }
+
+  /**
+   * 辿った結果を受け取るもの。
+   */
+  private abstract static class Visitor {
+    protected final int       mode;
+    protected final short[]   query;
+    protected final int       mask;
+    protected final long[]    blacklist; // このモーラを含む単語は除く (Mora.set)
+    protected final WordTable table;
+
+    // 辿った節点と、距離を計算した単語の数 (Metrics に加える)
+    protected long visited;
+    protected long scored;
+
+    protected Visitor(final int mode, final short[] query, final int mask, final long[] blacklist, final WordTable table) {
+      this.mode      = mode;
+      this.query     = query;
+      this.mask      = mask;
+      this.blacklist = blacklist;
+      this.table     = table;
+    }
+
+    // 品詞が mask に含まれるか
+    protected boolean accepts(final int id) {
+      return (mask == Dictionary.MASK_ALL) || ((table.feature(id) & mask) != 0);
+    }
+
+    // 距離の下限がこれを超える部分木は辿らない
+    public int bound() {
+      return Integer.MAX_VALUE;
+    }
+
+    // 辿るときに距離を積み上げるかどうか
+    public boolean scoring() {
+      return false;
+    }
+
+    // ids[from..to) を受け取る
+    public abstract void accept(final int[] ids, final int from, final int to, final int distance);
+
+    // 辿り終えたら数えたものを Metrics に加える
+    public void report() {
+      Metrics.INSTANCE.visited(visited);
+      Metrics.INSTANCE.scored(scored);
+    }
+  }
+
+  private static final class Collector extends Visitor {
+    private int[] array = new int[16];
+    private int   size  = 0;
+
+    public Collector(final int mode, final short[] query, final int mask, final long[] blacklist, final WordTable table) {
+      super(mode, query, mask, blacklist, table);
+    }
+
+    @Override
+    public void accept(final int[] ids, final int from, final int to, final int distance) {
+      final int count = to - from;
+      if (size + count > array.length) {
+        array = Arrays.copyOf(array, Math.max(array.length * 2, size + count));
+      }
+      if (mask == Dictionary.MASK_ALL) {
+        System.arraycopy(ids, from, array, size, count);
+        size += count;
       } else {
-        final Node node = next[v.ordinal()];
-        if (node != null) {
-          node.collect(query, i+1, list);
+        for (int i = from; i < to; ++i) {
+          if (this.accepts(ids[i])) {
+            array[size++] = ids[i];
+          }
         }
       }
     }
 
-    public void collectHead(final Mora[] query, final List<Word> list) {
-      this.collectHead(query, 0, list);
+    public int[] toArray() {
+      return Arrays.copyOf(array, size);
+    }
+  }
+
+  private static final class Best extends Visitor {
+    private final int               maxDistance;
+    private final int               limit;
+    private final WordTable.Profile profile;
+
+    // limit があれば大きさ limit の最大ヒープ、なければ単なる列
+    private long[] keys;
+    private int    size;
+
+    private int[]   distance = new int[16];
+    private int[]   buffer   = new int[16];
+    private int[][] rows     = new int[0][];
+
+    public Best(final int mode, final short[] query, final int mask, final long[] blacklist,
+        final int maxDistance, final int limit, final WordTable table) {
+      super(mode, query, mask, blacklist, table);
+      this.maxDistance = maxDistance;
+      this.limit       = limit;
+      this.profile     = new WordTable.Profile(query);
+      this.keys        = new long[(limit > 0) ? limit : 16];
+      this.size        = 0;
+    }
+
+    @Override
+    public int bound() {
+      if ((limit > 0) && (size >= limit)) {
+        return Math.min(maxDistance, (int)(keys[0] >> 32));
+      }
+      return maxDistance;
+    }
+
+    @Override
+    public boolean scoring() {
+      return true;
     }
 
-    private void collectHead(final Mora[] query, final int i, final List<Word> list) {
-      if (i >= query.length) {
-        // マッチしたので回収
-        for (final Node node : next) {
-          if (node != null) {
-            node.collectAll(list);
+    // 整列の表の depth 行目に使う作業領域
+    public int[] row(final int depth) {
+      if (depth >= rows.length) {
+        rows = Arrays.copyOf(rows, Math.max(rows.length * 2, depth + 1));
+      }
+      if (rows[depth] == null) {
+        rows[depth] = new int[query.length + 1];
+      }
+      return rows[depth];
+    }
+
+    @Override
+    public void accept(final int[] ids, final int from, final int to, final int lowerBound) {
+      if (mode == Dictionary.ALIGN) {
+        // 整列の費用は辿った経路で確定している
+        for (int i = from; i < to; ++i) {
+          if (this.accepts(ids[i])) {
+            this.offer(((long)lowerBound << 32) | table.rank(mode, ids[i]));
           }
         }
         return;
       }
 
-      final Mora.Vowel v = query[i].getVowel();
-      if (Mora.Vowel.any.equals(v)) {
-        for (final Node node : next) {
-          if (node != null) {
-            node.collectHead(query, i+1, list);
+      // 辿った経路の距離は下限なので、単語ごとの距離は表で計算し直す
+      final int count = to - from;
+      if (distance.length < count) {
+        distance = new int[count];
+        buffer   = new int[count];
+      }
+      System.arraycopy(ids, from, buffer, 0, count);
+      table.distance(mode, profile, buffer, count, distance);
+      scored += count;
+      for (int i = 0; i < count; ++i) {
+        if ((distance[i] <= maxDistance) && this.accepts(buffer[i])) {
+          this.offer(((long)distance[i] << 32) | table.rank(mode, buffer[i]));
+        }
+      }
+    }
+
+    private void offer(final long key) {
+      if (limit <= 0) {
+        if (size >= keys.length) {
+          keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[size++] = key;
+      } else if (size < limit) {
+        int i = size++;
+        while (i > 0) {
+          final int parent = (i - 1) >>> 1;
+          if (keys[parent] >= key) {
+            break;
           }
+          keys[i] = keys[parent];
+          i = parent;
         }
-      } else {
-        final Node node = next[v.ordinal()];
-        if (node != null) {
-          node.collectHead(query, i+1, list);
+        keys[i] = key;
+      } else if (key < keys[0]) {
+        int i = 0;
+        for (;;) {
+          int child = 2 * i + 1;
+          if (child >= size) {
+            break;
+          }
+          if ((child + 1 < size) && (keys[child+1] > keys[child])) {
+            ++child;
+          }
+          if (keys[child] <= key) {
+            break;
+          }
+          keys[i] = keys[child];
+          i = child;
         }
+        keys[i] = key;
       }
     }
 
-    public void collectTail(final Mora[] query, final List<Word> list) {
-      this.collectTail(query, 0, list);
+    public long[] toArray() {
+      return Arrays.copyOf(keys, size);
+    }
+  }
+
+  /**
+   * 節点を幅優先の順に番号付けして配列に並べた木。
+   * 節点 n の子は child[n] から child[n+1] の手前までの節点で、枝のモーラの昇順 (母音、子音の順) に並ぶ。
+   * 配列だけでできているので、そのまま Snapshot に書き出して読み戻せる。
+   */
+  private static final class Tree {
+    public static final int ROOT = 0;
+
+    private final short[] keys;  // 親から節点 n への枝のモーラ (強勢なし)。根では使わない
+    private final int[]   child;
+    private final int[]   mask;  // 部分木の単語の品詞 (Dictionary.MASK_*) の論理和
+    private final int[]   start; // 節点 n で終わる単語は ids[start[n]] から ids[start[n+1]] の手前まで
+    private final int[]   ids;
+
+    private Tree(final short[] keys, final int[] child, final int[] mask, final int[] start, final int[] ids) {
+      this.keys  = keys;
+      this.child = child;
+      this.mask  = mask;
+      this.start = start;
+      this.ids   = ids;
     }
 
-    private void collectTail(final Mora[] query, final int i, final List<Word> list) {
+    // i 番目の問い合わせのモーラに対応する子を辿る。distance はここまでの距離の下限。
+    public void visit(final Visitor visitor, final int n, final int i, final int distance) {
+      if ((distance > visitor.bound()) || ((mask[n] & visitor.mask) == 0)) {
+        return;
+      }
+      Dictionary.checkInterrupted();
+      ++visitor.visited;
+
+      final short[] query = visitor.query;
+      final int     mode  = visitor.mode;
       if (i >= query.length) {
         // マッチしたので回収
-        for (final Node node : next) {
-          if (node != null) {
-            node.collectAll(list);
+        if (mode == Dictionary.STRICT) {
+          if (start[n] < start[n+1]) {
+            visitor.accept(ids, start[n], start[n+1], distance);
+          }
+        } else {
+          for (int k = child[n], end = child[n+1]; k < end; ++k) {
+            if (!Mora.intersects(visitor.blacklist, keys[k])) {
+              this.visitAll(visitor, k, distance);
+            }
           }
         }
         return;
       }
 
-      final Mora.Vowel v = query[query.length-1-i].getVowel();
-      if (Mora.Vowel.any.equals(v)) {
-        for (final Node node : next) {
-          if (node != null) {
-            node.collectTail(query, i+1, list);
+      final short q = query[(mode == Dictionary.TAIL) ? (query.length-1-i) : i];
+      final int   v = Mora.vowel(q);
+      final int   c = Mora.consonant(q);
+      final int   from = child[n];
+      final int   to   = child[n+1];
+      if (v != Mora.VOWEL_ANY) {
+        // 母音が決まっていれば、子音は順位付けにだけ使うのでその母音の子を全て辿る
+        for (int k = Tree.lowerBound(keys, from, to, Mora.key(0, v)), end = Tree.lowerBound(keys, k, to, Mora.key(0, v+1)); k < end; ++k) {
+          this.visitChild(visitor, k, i, distance, q);
+        }
+      } else if (c != Mora.CONSONANT_ANY) {
+        // 子音だけが指定されていれば、各母音についてその子音の子だけを辿る
+        for (int w = 0; w < Mora.VOWEL_COUNT; ++w) {
+          final int k = Arrays.binarySearch(keys, from, to, Mora.key(c, w));
+          if (k >= 0) {
+            this.visitChild(visitor, k, i, distance, q);
           }
         }
       } else {
-        final Node node = next[v.ordinal()];
-        if (node != null) {
-          node.collectTail(query, i+1, list);
+        for (int k = from; k < to; ++k) {
+          this.visitChild(visitor, k, i, distance, q);
         }
       }
     }
 
-    private void collectAll(final List<Word> list) {
-      list.addAll(Arrays.asList(array));
-      for (final Node node : next) {
-        if (node != null) {
-          node.collectAll(list);
+    // 辿った枝のモーラは部分木の単語が全て含むので、blacklist に当たる枝は辿らない
+    private void visitChild(final Visitor visitor, final int k, final int i, final int distance, final short q) {
+      if (Mora.intersects(visitor.blacklist, keys[k])) {
+        return;
+      }
+      if (visitor.scoring()) {
+        final int d = Mora.distance(q, keys[k]);
+        if (d >= 0) {
+          this.visit(visitor, k, i+1, distance + d);
+        }
+      } else {
+        this.visit(visitor, k, i+1, distance);
+      }
+    }
+
+    // row は根から節点 n までのモーラと query を整列させた表の最後の行
+    public void align(final Best best, final int n, final int[] row, final int depth) {
+      if ((mask[n] & best.mask) == 0) {
+        return;
+      }
+      Dictionary.checkInterrupted();
+      ++best.visited;
+      final int length = best.query.length;
+      if ((start[n] < start[n+1]) && (row[length] <= best.bound())) {
+        best.accept(ids, start[n], start[n+1], row[length]);
+      }
+
+      final int[] next = best.row(depth + 1);
+      for (int k = child[n], end = child[n+1]; k < end; ++k) {
+        if (!Mora.intersects(best.blacklist, keys[k]) && (Word.align(best.query, keys[k], row, next) <= best.bound())) {
+          this.align(best, k, next, depth + 1);
         }
       }
     }
 
+    private void visitAll(final Visitor visitor, final int n, final int distance) {
+      if ((distance > visitor.bound()) || ((mask[n] & visitor.mask) == 0)) {
+        return;
+      }
+      Dictionary.checkInterrupted();
+      ++visitor.visited;
+      if (start[n] < start[n+1]) {
+        visitor.accept(ids, start[n], start[n+1], distance);
+      }
+      for (int k = child[n], end = child[n+1]; k < end; ++k) {
+        if (!Mora.intersects(visitor.blacklist, keys[k])) {
+          this.visitAll(visitor, k, distance);
+        }
+      }
+    }
+
+    // keys[from..to) のうち key 以上の最初の位置
+    private static int lowerBound(final short[] keys, int from, int to, final short key) {
+      while (from < to) {
+        final int mid = (from + to) >>> 1;
+        if (keys[mid] < key) {
+          from = mid + 1;
+        } else {
+          to = mid;
+        }
+      }
+      return from;
+    }
+
+    // 書き出したときの大きさ (バイト数)
+    public int bytes() {
+      final int size = mask.length;
+      return 8 + Snapshot.pad(size) + 4 * ((size + 1) + size + (size + 1) + ids.length);
+    }
+
+    public void write(final ByteBuffer buffer) {
+      buffer.putInt(mask.length);
+      buffer.putInt(ids.length);
+      Snapshot.putShorts(buffer, keys);
+      Snapshot.putInts(buffer, child);
+      Snapshot.putInts(buffer, mask);
+      Snapshot.putInts(buffer, start);
+      Snapshot.putInts(buffer, ids);
+    }
+
+    public static Tree read(final ByteBuffer buffer) {
+      final int size  = buffer.getInt();
+      final int count = buffer.getInt();
+      final short[] keys  = Snapshot.getShorts(buffer, size);
+      final int[]   child = Snapshot.getInts(buffer, size + 1);
+      final int[]   mask  = Snapshot.getInts(buffer, size);
+      final int[]   start = Snapshot.getInts(buffer, size + 1);
+      final int[]   ids   = Snapshot.getInts(buffer, count);
+      return new Tree(keys, child, mask, start, ids);
+    }
+
+    public static void skip(final ByteBuffer buffer) {
+      final int size  = buffer.getInt();
+      final int count = buffer.getInt();
+      buffer.position(buffer.position() + Snapshot.pad(size) + 4 * ((size + 1) + size + (size + 1) + count));
+    }
+
     public static final class Builder {
-      private final List<Word> list = new ArrayList<Word>();
+      private final List<Integer> list = new ArrayList<Integer>();
+      private int mask = 0;
 
-      private final Builder[] next = new Builder[Mora.Vowel.count.ordinal()];
+      private final Map<Short, Builder> next = new HashMap<Short, Builder>();
 
-      public Builder get(final Mora mora) {
-        final int ordinal = mora.getVowel().ordinal();
-        final Builder node = next[ordinal];
+      public Builder get(final short mora) {
+        final Short key = (short)(mora & Mora.KEY_MASK);
+        final Builder node = next.get(key);
         if (node == null) {
-          return next[ordinal] = new Builder();
+          final Builder child = new Builder();
+          next.put(key, child);
+          return child;
         } else {
           return node;
         }
       }
 
-      public void add(final Word word) {
-        list.add(word);
+      public void add(final int id, final int feature) {
+        list.add(id);
+        mask |= feature;
       }
 
-      public Node build() {
-        final Node[] next = new Node[this.next.length];
-        for (int i = 0, size = next.length; i < size; ++i) {
-          if (this.next[i] != null) {
-            next[i] = this.next[i].build();
+      // 部分木の節点の数
+      private int nodes() {
+        int count = 1;
+        for (final Builder node : next.values()) {
+          count += node.nodes();
+        }
+        return count;
+      }
+
+      private short[] keys() {
+        final short[] keys = new short[next.size()];
+        int i = 0;
+        for (final Short key : next.keySet()) {
+          keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        return keys;
+      }
+
+      public Tree build() {
+        final int size = this.nodes();
+        final Builder[] queue = new Builder[size];
+        final short[]   keys  = new short[size];
+        final int[]     child = new int[size + 1];
+        final int[]     mask  = new int[size];
+        final int[]     start = new int[size + 1];
+
+        // 幅優先に番号を付ける
+        queue[ROOT] = this;
+        int tail  = 1;
+        int count = 0;
+        for (int n = 0; n < size; ++n) {
+          final Builder node = queue[n];
+          child[n] = tail;
+          start[n] = count;
+          mask [n] = node.mask;
+          count += node.list.size();
+          for (final short key : node.keys()) {
+            keys [tail] = key;
+            queue[tail] = node.next.get(key);
+            ++tail;
+          }
+        }
+        child[size] = tail;
+        start[size] = count;
+
+        final int[] ids = new int[count];
+        for (int n = 0; n < size; ++n) {
+          final List<Integer> list = queue[n].list;
+          for (int i = 0, length = list.size(); i < length; ++i) {
+            ids[start[n] + i] = list.get(i);
           }
         }
-        return new Node(list.toArray(new Word[list.size()]), next);
+
+        // 子は親より後ろにあるので、後ろから品詞を親へ集める
+        for (int n = size - 1; n >= 0; --n) {
+          for (int k = child[n], end = child[n+1]; k < end; ++k) {
+            mask[n] |= mask[k];
+          }
+        }
+        return new Tree(keys, child, mask, start, ids);
       }
     }
   }
 
+  // 書き出したときの大きさ (バイト数)
+  public int bytes() {
+    return rootNext.bytes() + rootPrev.bytes();
+  }
+
+  public void write(final ByteBuffer buffer) {
+    rootNext.write(buffer);
+    rootPrev.write(buffer);
+  }
+
+  public static Trie read(final ByteBuffer buffer) {
+    final Tree rootNext = Tree.read(buffer);
+    final Tree rootPrev = Tree.read(buffer);
+    return new Trie(rootNext, rootPrev);
+  }
+
+  public static void skip(final ByteBuffer buffer) {
+    Tree.skip(buffer);
+    Tree.skip(buffer);
+  }
+
   public static final class Builder {
     public Trie build(final Word[] words) {
-      final Node.Builder rootNext = new Node.Builder();
-      final Node.Builder rootPrev = new Node.Builder();
-      for (final Word word : words) {
-        {
-          Node.Builder node = rootNext;
-          for (final Mora mora : word.getMora()) {
-            node = node.get(mora);
-          }
-          node.add(word);
-        }
-        {
-          Node.Builder node = rootPrev;
-          final Mora[] mora = word.getMora();
+      return new Trie(Builder.build(words, false), Builder.build(words, true));
+    }
+
+    // 後ろ向きの木は exec で、前向きの木は呼び出したスレッドで作る
+    public Trie build(final Word[] words, final ExecutorService exec) {
+      final Future<Tree> rootPrev = exec.submit(new Callable<Tree>() {
+        @Override
+        public Tree call() {
+          return Builder.build(words, true);
+        }
+      });
+      final Tree rootNext = Builder.build(words, false);
+      return new Trie(rootNext, Dictionary.get(rootPrev));
+    }
+
+    private static Tree build(final Word[] words, final boolean reverse) {
+      final Tree.Builder root = new Tree.Builder();
+      for (int id = 0, size = words.length; id < size; ++id) {
+        final short[] mora = words[id].getMora();
+        Tree.Builder node = root;
+        if (reverse) {
           for (int i = mora.length - 1; i >= 0; --i) {
             node = node.get(mora[i]);
           }
-          node.add(word);
+        } else {
+          for (final short m : mora) {
+            node = node.get(m);
+          }
         }
+        node.add(id, words[id].getFeature());
       }
-      return new Trie(rootNext.build(), rootPrev.build());
+      return root.build();
     }
   }
 }
@@ -0,0 +1,285 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ArrayList;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ユーザー定義の単語 (Dictionary.MASK_USER)。実行中に追加・削除できる。
+ *
+ * 単語は変更のあった経路だけを複製する永続的な木に持ち、変更のたびに新しい根を公開する。
+ * 検索は公開された根を一度読むだけなので変更を待たず、作りかけの木を見ることもない。
+ * 追加・削除の手間は単語のモーラ数に比例し、辞書の大きさにはよらない。
+ * 単語は少ない想定なので、距離は Word の各メソッドで単語ごとに計算する。
+ */
+final class UserPartition {
+  private final AtomicReference<Root> root = new AtomicReference<Root>(new Root(Node.EMPTY, Node.EMPTY, 0));
+
+  public UserPartition(final Word[] words) {
+    for (final Word word : words) {
+      this.add(word);
+    }
+  }
+
+  public int size() {
+    return root.get().size;
+  }
+
+  /**
+   * 単語を加える。同じ読みと表記の単語が既にあれば何もせず false を返す。
+   */
+  public synchronized boolean add(final Word word) {
+    final Root current = root.get();
+    final short[] mora    = word.getMora();
+    final short[] reverse = UserPartition.reverse(mora);
+    final Node next = current.next.add(mora, 0, word);
+    if (next == null) {
+      return false;
+    }
+    root.set(new Root(next, current.prev.add(reverse, 0, word), current.size + 1));
+    return true;
+  }
+
+  /**
+   * 読みと表記が word と同じ単語を除く。無ければ false を返す。
+   */
+  public synchronized boolean remove(final Word word) {
+    final Root current = root.get();
+    final short[] mora    = word.getMora();
+    final short[] reverse = UserPartition.reverse(mora);
+    final Node next = current.next.remove(mora, 0, word);
+    if (next == null) {
+      return false;
+    }
+    root.set(new Root(next, current.prev.remove(reverse, 0, word), current.size - 1));
+    return true;
+  }
+
+  /**
+   * blacklist (Mora.set) のモーラを含まない単語の検索結果 (Partition.rank を参照)。
+   */
+  public Ranking.Part rank(final int mode, final short[] query, final long[] blacklist) {
+    final int maxDistance = (mode == Dictionary.ALIGN) ? Dictionary.ALIGN_DISTANCE : Integer.MAX_VALUE;
+    return this.rank(mode, query, blacklist, maxDistance, 0);
+  }
+
+  public Ranking.Part rank(final int mode, final short[] query, final long[] blacklist,
+      final int maxDistance, final int limit) {
+    final Root current = root.get();
+    final List<Word> candidates = new ArrayList<Word>();
+    switch (mode) {
+    case Dictionary.STRICT  :
+    case Dictionary.HEAD    : current.next.collect(mode, query, 0, blacklist, candidates); break;
+    case Dictionary.TAIL    : current.prev.collect(mode, query, 0, blacklist, candidates); break;
+    case Dictionary.INTERNAL:
+    case Dictionary.ALIGN   : current.next.collectAll(blacklist, candidates); break;
+    default                 : throw new IllegalArgumentException("mode: " + mode);
+    }
+
+    final List<Word>    words     = new ArrayList<Word>();
+    final List<Integer> distances = new ArrayList<Integer>();
+    for (final Word word : candidates) {
+      final int distance;
+      switch (mode) {
+      case Dictionary.STRICT  : distance = word.distance    (query); break;
+      case Dictionary.HEAD    : distance = word.distanceHead(query); break;
+      case Dictionary.TAIL    : distance = word.distanceTail(query); break;
+      case Dictionary.INTERNAL: distance = word.matchInternal(query) ? 0 : -1; break;
+      default                 : distance = word.distanceAlign(query); break;
+      }
+      if ((distance >= 0) && ((mode == Dictionary.INTERNAL) || (distance <= maxDistance))) {
+        words    .add(word);
+        distances.add(distance);
+      }
+    }
+    Metrics.INSTANCE.scored(candidates.size());
+
+    // 距離と Word.compare の順に並べ、その添字を順位とする
+    final Integer[] order = new Integer[words.size()];
+    for (int i = 0, size = order.length; i < size; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer a, final Integer b) {
+        final int da = distances.get(a);
+        final int db = distances.get(b);
+        if (da != db) {
+          return (da < db) ? -1 : 1;
+        }
+        return Word.compare(mode, words.get(a), words.get(b));
+      }
+    });
+
+    final int size = ((limit > 0) && (mode != Dictionary.INTERNAL)) ? Math.min(limit, order.length) : order.length;
+    final Word[] sorted = new Word[size];
+    final long[] keys   = new long[size];
+    for (int i = 0; i < size; ++i) {
+      sorted[i] = words.get(order[i]);
+      keys  [i] = ((long)distances.get(order[i]) << 32) | i;
+    }
+    return new Ranking.Part(sorted, mode, keys);
+  }
+
+  private static short[] reverse(final short[] mora) {
+    final short[] reverse = new short[mora.length];
+    for (int i = 0, length = mora.length; i < length; ++i) {
+      reverse[i] = mora[length-1-i];
+    }
+    return reverse;
+  }
+
+  private static final class Root {
+    private final Node next; // 前から辿る木
+    private final Node prev; // 後ろから辿る木
+    private final int  size;
+
+    public Root(final Node next, final Node prev, final int size) {
+      this.next = next;
+      this.prev = prev;
+      this.size = size;
+    }
+  }
+
+  /**
+   * 変更しない節点。子は枝のモーラ (強勢なし) の昇順に並ぶ。
+   */
+  private static final class Node {
+    public static final Node EMPTY = new Node(new Word[0], new short[0], new Node[0]);
+
+    private final Word[]  words;
+    private final short[] keys;
+    private final Node[]  next;
+
+    private Node(final Word[] words, final short[] keys, final Node[] next) {
+      this.words = words;
+      this.keys  = keys;
+      this.next  = next;
+    }
+
+    private boolean isEmpty() {
+      return (words.length == 0) && (keys.length == 0);
+    }
+
+    // mora[depth..] の先に word を加えた節点を返す。既にあれば null を返す。
+    public Node add(final short[] mora, final int depth, final Word word) {
+      if (depth >= mora.length) {
+        if (this.indexOf(word) >= 0) {
+          return null;
+        }
+        final Word[] words = Arrays.copyOf(this.words, this.words.length + 1);
+        words[this.words.length] = word;
+        return new Node(words, keys, next);
+      }
+
+      final short key = (short)(mora[depth] & Mora.KEY_MASK);
+      final int   k   = Arrays.binarySearch(keys, key);
+      if (k >= 0) {
+        final Node child = next[k].add(mora, depth + 1, word);
+        if (child == null) {
+          return null;
+        }
+        final Node[] next = this.next.clone();
+        next[k] = child;
+        return new Node(words, keys, next);
+      }
+
+      final int i = -(k + 1);
+      final short[] keys = new short[this.keys.length + 1];
+      final Node[]  next = new Node [this.next.length + 1];
+      System.arraycopy(this.keys, 0, keys, 0, i);
+      System.arraycopy(this.next, 0, next, 0, i);
+      keys[i] = key;
+      next[i] = EMPTY.add(mora, depth + 1, word);
+      System.arraycopy(this.keys, i, keys, i + 1, this.keys.length - i);
+      System.arraycopy(this.next, i, next, i + 1, this.next.length - i);
+      return new Node(words, keys, next);
+    }
+
+    // mora[depth..] の先から word を除いた節点を返す。無ければ null を返す。
+    public Node remove(final short[] mora, final int depth, final Word word) {
+      if (depth >= mora.length) {
+        final int i = this.indexOf(word);
+        if (i < 0) {
+          return null;
+        }
+        final Word[] words = new Word[this.words.length - 1];
+        System.arraycopy(this.words, 0, words, 0, i);
+        System.arraycopy(this.words, i + 1, words, i, words.length - i);
+        return new Node(words, keys, next);
+      }
+
+      final int k = Arrays.binarySearch(keys, (short)(mora[depth] & Mora.KEY_MASK));
+      if (k < 0) {
+        return null;
+      }
+      final Node child = next[k].remove(mora, depth + 1, word);
+      if (child == null) {
+        return null;
+      }
+      if (!child.isEmpty()) {
+        final Node[] next = this.next.clone();
+        next[k] = child;
+        return new Node(words, keys, next);
+      }
+
+      // 空になった子は枝ごと除く
+      final short[] keys = new short[this.keys.length - 1];
+      final Node[]  next = new Node [this.next.length - 1];
+      System.arraycopy(this.keys, 0, keys, 0, k);
+      System.arraycopy(this.next, 0, next, 0, k);
+      System.arraycopy(this.keys, k + 1, keys, k, keys.length - k);
+      System.arraycopy(this.next, k + 1, next, k, next.length - k);
+      return new Node(words, keys, next);
+    }
+
+    private int indexOf(final Word word) {
+      for (int i = 0, size = words.length; i < size; ++i) {
+        if (words[i].getKana().equals(word.getKana()) && words[i].getWords().equals(word.getWords())) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    // Trie と同じく、母音が決まっていればその母音の子を、子音だけならその子音の子を辿る
+    public void collect(final int mode, final short[] query, final int i, final long[] blacklist, final List<Word> out) {
+      if (i >= query.length) {
+        if (mode == Dictionary.STRICT) {
+          Collections.addAll(out, words);
+        } else {
+          for (int k = 0, size = keys.length; k < size; ++k) {
+            if (!Mora.intersects(blacklist, keys[k])) {
+              next[k].collectAll(blacklist, out);
+            }
+          }
+        }
+        return;
+      }
+
+      final short q = query[(mode == Dictionary.TAIL) ? (query.length-1-i) : i];
+      final int   v = Mora.vowel(q);
+      final int   c = Mora.consonant(q);
+      for (int k = 0, size = keys.length; k < size; ++k) {
+        final short key = keys[k];
+        if (Mora.intersects(blacklist, key)) {
+          continue;
+        }
+        if ((v != Mora.VOWEL_ANY) ? (Mora.vowel(key) == v) : ((c == Mora.CONSONANT_ANY) || (Mora.consonant(key) == c))) {
+          next[k].collect(mode, query, i + 1, blacklist, out);
+        }
+      }
+    }
+
+    public void collectAll(final long[] blacklist, final List<Word> out) {
+      Collections.addAll(out, words);
+      for (int k = 0, size = keys.length; k < size; ++k) {
+        if (!Mora.intersects(blacklist, keys[k])) {
+          next[k].collectAll(blacklist, out);
+        }
+      }
+    }
+  }
+}
@@ -1,15 +1,17 @@
 import java.util.Arrays;
-import java.util.List;
-import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
 
 final class Word implements Comparable<Word> {
 
+  // 整列 (distanceAlign) で一モーラを挿入・削除する費用。子音の距離のどれよりも大きくしておく。
+  public static final int GAP = 8;
+
   private final int    feature;
   private final String kana;
   private final String words;
-  private final Mora[] mora;
+  private final short[] mora;
+  private final long[]  set;   // 現れるモーラの集合 (Mora.set)
 
   public Word(final int feature, final String kana, final String words) {
     this.feature = feature;
@@ -31,12 +33,34 @@ final class Word implements Comparable<Word> {
       this.words = sb.toString();
     }
     this.mora = Word.toMora(kana);
+    this.set  = Mora.set(mora);
+  }
+
+  // 整理済みの表記とモーラから作る (Snapshot 用)
+  public Word(final int feature, final String kana, final String words, final short[] mora) {
+    this.feature = feature;
+    this.kana    = kana;
+    this.words   = words;
+    this.mora    = mora;
+    this.set     = Mora.set(mora);
   }
 
-  public Mora[] getMora() {
+  public short[] getMora() {
     return mora;
   }
 
+  public String getKana() {
+    return kana;
+  }
+
+  public String getWords() {
+    return words;
+  }
+
+  public int getFeature() {
+    return feature;
+  }
+
   public String toHTML(final int feature) {
     if ((this.feature & feature) != 0) {
       return "<dt style=\'background-color:yellow;\'><dfn>" + kana + "</dfn></dt><dd>" + words + "</dd>";
@@ -50,7 +74,7 @@ final class Word implements Comparable<Word> {
     final StringBuilder builder = new StringBuilder();
     for (int i = 0, size = mora.length; i < size; ++i) {
       builder.append(' ');
-      builder.append(mora[i].toString());
+      builder.append(Mora.toString(mora[i]));
     }
     return kana + '；' + words + '：' + builder.substring(1);
   }
@@ -60,13 +84,39 @@ final class Word implements Comparable<Word> {
     return kana.compareTo(word.kana);
   }
 
-  public int distance(final Mora[] query) {
+  /**
+   * 距離の等しい検索結果の並び順。
+   * 母音列 (脚韻では後ろから) の順、読みの順、品詞 (Dictionary.NAMES) の順に並べる。
+   * 中間韻は母音列を比べず、辞書の順に並べる。
+   */
+  public static int compare(final int mode, final Word a, final Word b) {
+    if (mode != Dictionary.INTERNAL) {
+      final boolean reverse = (mode == Dictionary.TAIL);
+      for (int i = 0, size = Math.min(a.mora.length, b.mora.length); i < size; ++i) {
+        final int va = Mora.vowel(a.mora[reverse ? (a.mora.length-1-i) : i]);
+        final int vb = Mora.vowel(b.mora[reverse ? (b.mora.length-1-i) : i]);
+        if (va != vb) {
+          return va - vb;
+        }
+      }
+      if (a.mora.length != b.mora.length) {
+        return a.mora.length - b.mora.length;
+      }
+    }
+    final int c = a.kana.compareTo(b.kana);
+    if (c != 0) {
+      return c;
+    }
+    return Integer.numberOfTrailingZeros(a.feature) - Integer.numberOfTrailingZeros(b.feature);
+  }
+
+  public int distance(final short[] query) {
     if (query.length != mora.length) {
       return Integer.MAX_VALUE;
     }
     int distance = 0;
     for (int i = 0, size = query.length; i < size; ++i) {
-      final int distance_mora = query[i].distance(mora[i]);
+      final int distance_mora = Mora.distance(query[i], mora[i]);
       if (distance_mora < 0) {
         return Integer.MAX_VALUE;
       }
@@ -75,13 +125,13 @@ final class Word implements Comparable<Word> {
     return distance;
   }
 
-  public int distanceHead(final Mora[] query) {
+  public int distanceHead(final short[] query) {
     if (query.length > mora.length) {
       return Integer.MAX_VALUE;
     }
     int distance = 0;
     for (int i = 0, size = query.length; i < size; ++i) {
-      final int distance_mora = query[i].distance(mora[i]);
+      final int distance_mora = Mora.distance(query[i], mora[i]);
       if (distance_mora < 0) {
         return Integer.MAX_VALUE;
       }
@@ -90,13 +140,13 @@ final class Word implements Comparable<Word> {
     return distance;
   }
 
-  public int distanceTail(final Mora[] query) {
+  public int distanceTail(final short[] query) {
     if (query.length > mora.length) {
       return Integer.MAX_VALUE;
     }
     int distance = 0;
     for (int i = 1, size = query.length, offset = mora.length; i <= size; ++i) {
-      final int distance_mora = query[size-i].distance(mora[offset-i]);
+      final int distance_mora = Mora.distance(query[size-i], mora[offset-i]);
       if (distance_mora < 0) {
         return Integer.MAX_VALUE;
       }
@@ -105,82 +155,105 @@ final class Word implements Comparable<Word> {
     return distance;
   }
 
-/*
-int[] distance = new int[mora.length * query.length];
-for (int i = 0; i < query.length; ++i) {
-  final Mora a = query[i];
-  final Mora.Vowel v = a.getVowel();
-  for (int j = 0; j < mora.length; ++j) {
-    final Mora b = mora[j];
-    final Mora.Vowel w = b.getVowel();
-    if (v.equals(w) || Moera.Vowel.any.equals(v) || Mora.Vowel.any.equals(w)) {
-      int distance_min;
-      if (i > 0) {
-        distance_min = Integer.MAX_VALUE;
-        for (int k = 0; k < j; ++k) {
-          final int d = distance[(i-1) * mora.length + k];
-          if (distance_min > d) {
-            distance_min = d;
-          }
-        }
-      } else {
-        distance_min = 0;
+  /**
+   * 長さの違いを許して query と整列させたときの費用。
+   * 対応させたモーラは母音が一致していなければならず、子音の距離を費用とする。
+   * 対応させずに飛ばしたモーラは一つにつき GAP の費用とする。
+   */
+  public int distanceAlign(final short[] query) {
+    final int length = query.length;
+    int[] prev = new int[length + 1];
+    int[] next = new int[length + 1];
+    for (int j = 0; j <= length; ++j) {
+      prev[j] = j * GAP;
+    }
+    for (final short m : mora) {
+      Word.align(query, m, prev, next);
+      final int[] swap = prev;
+      prev = next;
+      next = swap;
+    }
+    return prev[length];
+  }
+
+  // 整列の表を一行進める。戻り値は新しい行の最小値。
+  public static int align(final short[] query, final short m, final int[] prev, final int[] next) {
+    int min = next[0] = prev[0] + GAP;
+    for (int j = 1, length = query.length; j <= length; ++j) {
+      int cost = Math.min(prev[j], next[j-1]) + GAP;
+      final int d = Word.substitution(query[j-1], m);
+      if ((d >= 0) && (prev[j-1] + d < cost)) {
+        cost = prev[j-1] + d;
       }
-      distance[i * mora.length + j] = distance_min + a.distance(b);
-    } else {
-      distance[i * mora.length + j] = Integer.MAX_VALUE;
+      next[j] = cost;
+      if (min > cost) {
+        min = cost;
+      }
+    }
+    return min;
   }
-}
-*/
 
-  public boolean contains(final Mora[] query) {
-    for (final Mora q : query) {
-      for (final Mora m : mora) {
-        if (q.equals(m)) {
-          return true;
-        }
+  // 整列で q と m を対応させる費用。対応させられなければ負。
+  // 母音を任意にした子音だけのモーラは、子音が一致するものにしか対応させない。
+  public static int substitution(final short q, final short m) {
+    final int v = Mora.vowel(q);
+    if (v == Mora.VOWEL_ANY) {
+      final int c = Mora.consonant(q);
+      if ((c != Mora.CONSONANT_ANY) && (c != Mora.consonant(m))) {
+        return -1;
       }
+    } else if ((v != Mora.vowel(m)) && (Mora.vowel(m) != Mora.VOWEL_ANY)) {
+      return -1;
     }
-    return false;
+    return Mora.distance(q, m);
   }
 
-  public boolean match(final Mora[] query) {
+  public boolean contains(final short[] query) {
+    return this.contains(Mora.set(query));
+  }
+
+  // set は Mora.set で作った問い合わせのモーラの集合
+  public boolean contains(final long[] set) {
+    return Mora.intersects(this.set, set);
+  }
+
+  public boolean match(final short[] query) {
     if (query.length != mora.length) {
       return false;
     }
     for (int i = 0, size = query.length; i < size; ++i) {
-      if (!query[i].equals(mora[i])) {
+      if (!Mora.equals(query[i], mora[i])) {
         return false;
       }
     }
     return true;
   }
 
-  public boolean matchPrefix(final Mora[] query) {
+  public boolean matchPrefix(final short[] query) {
     if (query.length >= mora.length) {
       return false;
     }
     for (int i = 0, size = query.length; i < size; ++i) {
-      if (!query[i].equals(mora[i])) {
+      if (!Mora.equals(query[i], mora[i])) {
         return false;
       }
     }
     return true;
   }
 
-  public boolean matchPostfix(final Mora[] query) {
+  public boolean matchPostfix(final short[] query) {
     if (query.length >= mora.length) {
       return false;
     }
     for (int i = 1, size = query.length, offset = mora.length; i <= size; ++i) {
-      if (!query[size-i].equals(mora[offset-i])) {
+      if (!Mora.equals(query[size-i], mora[offset-i])) {
         return false;
       }
     }
     return true;
   }
 
-  public boolean matchInternal(final Mora[] query) {
+  public boolean matchInternal(final short[] query) {
     if (query.length >= mora.length) {
       return false;
     }
@@ -189,10 +262,10 @@ for (int i = 0; i < query.length; ++i) {
     }
 
     int i = 0;
-    for (final Mora q : query) {
+    for (final short q : query) {
       for (;;) {
         if (i < mora.length) {
-          if (q.equals(mora[i++])) {
+          if (Mora.equals(q, mora[i++])) {
             break;
           }
         } else {
@@ -207,225 +280,298 @@ for (int i = 0; i < query.length; ++i) {
     return true;
   }
 
-  public static Mora[] toMora(final String kana) {
-    final List<Mora> list = new ArrayList<Mora>();
+  /**
+   * 読み (と子音・母音・強勢の指定) をモーラの列にする。
+   * 対応していない文字があれば IllegalArgumentException を投げる。
+   */
+  public static short[] toMora(final String kana) {
+    // 一文字から高々一モーラしか生成されないので、文字数分あれば足りる。
+    final short[] buffer = new short[kana.length()];
+    final int n = Word.toMora(kana, buffer, 0);
+    return (n == buffer.length) ? buffer : Arrays.copyOf(buffer, n);
+  }
+
+  /**
+   * toMora と同じだが、モーラを buffer の offset 番目から書き、書いた数を返す。
+   * buffer には offset から kana.length() 個の空きが要る。
+   * buffer を使い回せば、多くの読みを変換しても新たな配列を作らない。
+   */
+  public static int toMora(final String kana, final short[] buffer, final int offset) {
+    int n = offset;
     for (int i = 0, length = kana.length(); i < length; ++i) {
-           if (kana.startsWith("きゃ", i) || kana.startsWith("キャ", i)) { list.add(new Mora(Mora.Consonant._k_j , Mora.Vowel._a)); }// k_j  a
-      else if (kana.startsWith("きゅ", i) || kana.startsWith("キュ", i)) { list.add(new Mora(Mora.Consonant._k_j , Mora.Vowel._M)); }// k_j  M
-      else if (kana.startsWith("きぇ", i) || kana.startsWith("キェ", i)) { list.add(new Mora(Mora.Consonant._k_j , Mora.Vowel._e)); }// k_j  e
-      else if (kana.startsWith("きょ", i) || kana.startsWith("キョ", i)) { list.add(new Mora(Mora.Consonant._k_j , Mora.Vowel._o)); }// k_j  o
-      else if (kana.startsWith("ぎゃ", i) || kana.startsWith("ギャ", i)) { list.add(new Mora(Mora.Consonant._g_j , Mora.Vowel._a)); }// g_j  a
-      else if (kana.startsWith("ぎゅ", i) || kana.startsWith("ギュ", i)) { list.add(new Mora(Mora.Consonant._g_j , Mora.Vowel._M)); }// g_j  M
-      else if (kana.startsWith("ぎぇ", i) || kana.startsWith("ギェ", i)) { list.add(new Mora(Mora.Consonant._g_j , Mora.Vowel._e)); }// g_j  e
-      else if (kana.startsWith("ぎょ", i) || kana.startsWith("ギョ", i)) { list.add(new Mora(Mora.Consonant._g_j , Mora.Vowel._o)); }// g_j  o
-      else if (kana.startsWith("しゃ", i) || kana.startsWith("シャ", i)) { list.add(new Mora(Mora.Consonant._S   , Mora.Vowel._a)); }// S    a
-      else if (kana.startsWith("しゅ", i) || kana.startsWith("シュ", i)) { list.add(new Mora(Mora.Consonant._S   , Mora.Vowel._M)); }// S    M
-      else if (kana.startsWith("しぇ", i) || kana.startsWith("シェ", i)) { list.add(new Mora(Mora.Consonant._S   , Mora.Vowel._e)); }// S    e
-      else if (kana.startsWith("しょ", i) || kana.startsWith("ショ", i)) { list.add(new Mora(Mora.Consonant._S   , Mora.Vowel._o)); }// S    o
-      else if (kana.startsWith("じゃ", i) || kana.startsWith("ジャ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._a)); }// dZ   a
-      else if (kana.startsWith("じゅ", i) || kana.startsWith("ジュ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._M)); }// dZ   M
-      else if (kana.startsWith("じぇ", i) || kana.startsWith("ジェ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._e)); }// dZ   e
-      else if (kana.startsWith("じょ", i) || kana.startsWith("ジョ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._o)); }// dZ   o
-      else if (kana.startsWith("ぢゃ", i) || kana.startsWith("ヂャ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._a)); }// dZ   a
-      else if (kana.startsWith("ぢゅ", i) || kana.startsWith("ヂュ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._M)); }// dZ   M
-      else if (kana.startsWith("ぢぇ", i) || kana.startsWith("ヂェ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._e)); }// dZ   e
-      else if (kana.startsWith("ぢょ", i) || kana.startsWith("ヂョ", i)) { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel._o)); }// dZ   o
-      else if (kana.startsWith("つぁ", i) || kana.startsWith("ツァ", i)) { list.add(new Mora(Mora.Consonant._ts  , Mora.Vowel._a)); }// ts   a
-      else if (kana.startsWith("つぃ", i) || kana.startsWith("ツィ", i)) { list.add(new Mora(Mora.Consonant._ts  , Mora.Vowel._M)); }// ts   i
-      else if (kana.startsWith("つぇ", i) || kana.startsWith("ツェ", i)) { list.add(new Mora(Mora.Consonant._ts  , Mora.Vowel._e)); }// ts   e
-      else if (kana.startsWith("つぉ", i) || kana.startsWith("ツォ", i)) { list.add(new Mora(Mora.Consonant._ts  , Mora.Vowel._o)); }// ts   o
-      else if (kana.startsWith("ちゃ", i) || kana.startsWith("チャ", i)) { list.add(new Mora(Mora.Consonant._tS  , Mora.Vowel._a)); }// tS   a
-      else if (kana.startsWith("ちゅ", i) || kana.startsWith("チュ", i)) { list.add(new Mora(Mora.Consonant._tS  , Mora.Vowel._M)); }// tS   M
-      else if (kana.startsWith("ちぇ", i) || kana.startsWith("チェ", i)) { list.add(new Mora(Mora.Consonant._tS  , Mora.Vowel._e)); }// tS   e
-      else if (kana.startsWith("ちょ", i) || kana.startsWith("チョ", i)) { list.add(new Mora(Mora.Consonant._tS  , Mora.Vowel._o)); }// tS   o
-      else if (kana.startsWith("にゃ", i) || kana.startsWith("ニャ", i)) { list.add(new Mora(Mora.Consonant._J   , Mora.Vowel._a)); }// J    a
-      else if (kana.startsWith("にゅ", i) || kana.startsWith("ニュ", i)) { list.add(new Mora(Mora.Consonant._J   , Mora.Vowel._M)); }// J    M
-      else if (kana.startsWith("にぇ", i) || kana.startsWith("ニェ", i)) { list.add(new Mora(Mora.Consonant._J   , Mora.Vowel._e)); }// J    e
-      else if (kana.startsWith("にょ", i) || kana.startsWith("ニョ", i)) { list.add(new Mora(Mora.Consonant._J   , Mora.Vowel._o)); }// J    o
-      else if (kana.startsWith("ひゃ", i) || kana.startsWith("ヒャ", i)) { list.add(new Mora(Mora.Consonant._C   , Mora.Vowel._a)); }// C    a
-      else if (kana.startsWith("ひゅ", i) || kana.startsWith("ヒュ", i)) { list.add(new Mora(Mora.Consonant._C   , Mora.Vowel._M)); }// C    M
-      else if (kana.startsWith("ひぇ", i) || kana.startsWith("ヒェ", i)) { list.add(new Mora(Mora.Consonant._C   , Mora.Vowel._e)); }// C    e
-      else if (kana.startsWith("ひょ", i) || kana.startsWith("ヒョ", i)) { list.add(new Mora(Mora.Consonant._C   , Mora.Vowel._o)); }// C    o
-      else if (kana.startsWith("びゃ", i) || kana.startsWith("ビャ", i)) { list.add(new Mora(Mora.Consonant._b_j , Mora.Vowel._a)); }// b_j  a
-      else if (kana.startsWith("びゅ", i) || kana.startsWith("ビュ", i)) { list.add(new Mora(Mora.Consonant._b_j , Mora.Vowel._M)); }// b_j  M
-      else if (kana.startsWith("びぇ", i) || kana.startsWith("ビェ", i)) { list.add(new Mora(Mora.Consonant._b_j , Mora.Vowel._e)); }// b_j  e
-      else if (kana.startsWith("びょ", i) || kana.startsWith("ビョ", i)) { list.add(new Mora(Mora.Consonant._b_j , Mora.Vowel._o)); }// b_j  o
-      else if (kana.startsWith("ぴゃ", i) || kana.startsWith("ピャ", i)) { list.add(new Mora(Mora.Consonant._p_j , Mora.Vowel._a)); }// p_j  a
-      else if (kana.startsWith("ぴゅ", i) || kana.startsWith("ピュ", i)) { list.add(new Mora(Mora.Consonant._p_j , Mora.Vowel._M)); }// P_j  M
-      else if (kana.startsWith("ぴぇ", i) || kana.startsWith("ピェ", i)) { list.add(new Mora(Mora.Consonant._p_j , Mora.Vowel._e)); }// p_j  e
-      else if (kana.startsWith("ぴょ", i) || kana.startsWith("ピョ", i)) { list.add(new Mora(Mora.Consonant._p_j , Mora.Vowel._o)); }// p_j  o
-      else if (kana.startsWith("みゃ", i) || kana.startsWith("ミャ", i)) { list.add(new Mora(Mora.Consonant._m_j , Mora.Vowel._a)); }// m_j  a
-      else if (kana.startsWith("みゅ", i) || kana.startsWith("ミュ", i)) { list.add(new Mora(Mora.Consonant._m_j , Mora.Vowel._M)); }// m_j  M
-      else if (kana.startsWith("みぇ", i) || kana.startsWith("ミェ", i)) { list.add(new Mora(Mora.Consonant._m_j , Mora.Vowel._e)); }// m_j  e
-      else if (kana.startsWith("みょ", i) || kana.startsWith("ミョ", i)) { list.add(new Mora(Mora.Consonant._m_j , Mora.Vowel._o)); }// m_j  o
-      else if (kana.startsWith("りゃ", i) || kana.startsWith("リャ", i)) { list.add(new Mora(Mora.Consonant._4_j , Mora.Vowel._a)); }// 4_j  a
-      else if (kana.startsWith("りゅ", i) || kana.startsWith("リュ", i)) { list.add(new Mora(Mora.Consonant._4_j , Mora.Vowel._M)); }// 4_j  M
-      else if (kana.startsWith("りぇ", i) || kana.startsWith("リェ", i)) { list.add(new Mora(Mora.Consonant._4_j , Mora.Vowel._e)); }// 4_j  e
-      else if (kana.startsWith("りょ", i) || kana.startsWith("リョ", i)) { list.add(new Mora(Mora.Consonant._4_j , Mora.Vowel._o)); }// 4_j  o
-      else if (kana.startsWith("ふぁ", i) || kana.startsWith("ファ", i)) { list.add(new Mora(Mora.Consonant._pb  , Mora.Vowel._a)); }// p\   a
-      else if (kana.startsWith("ふぃ", i) || kana.startsWith("フィ", i)) { list.add(new Mora(Mora.Consonant._pb_j, Mora.Vowel._M)); }// p\_j i
-      else if (kana.startsWith("ふゅ", i) || kana.startsWith("フュ", i)) { list.add(new Mora(Mora.Consonant._pb_j, Mora.Vowel._e)); }// p\_j e
-      else if (kana.startsWith("ふぇ", i) || kana.startsWith("フェ", i)) { list.add(new Mora(Mora.Consonant._pb  , Mora.Vowel._e)); }// p\   e
-      else if (kana.startsWith("ふぉ", i) || kana.startsWith("フォ", i)) { list.add(new Mora(Mora.Consonant._pb  , Mora.Vowel._o)); }// p\   o
-      else if (kana.startsWith("すぃ", i) || kana.startsWith("スィ", i)) { list.add(new Mora(Mora.Consonant._s   , Mora.Vowel._i)); }// s    i
-      else if (kana.startsWith("ずぃ", i) || kana.startsWith("ズィ", i)) { list.add(new Mora(Mora.Consonant._dz  , Mora.Vowel._i)); }// dz   i
-      else if (kana.startsWith("てぃ", i) || kana.startsWith("ティ", i)) { list.add(new Mora(Mora.Consonant._t_j , Mora.Vowel._i)); }// t_j  i
-      else if (kana.startsWith("てゅ", i) || kana.startsWith("テュ", i)) { list.add(new Mora(Mora.Consonant._t_j , Mora.Vowel._M)); }// t_j  M
-      else if (kana.startsWith("とぅ", i) || kana.startsWith("トゥ", i)) { list.add(new Mora(Mora.Consonant._t   , Mora.Vowel._M)); }// t    M
-      else if (kana.startsWith("でぃ", i) || kana.startsWith("ディ", i)) { list.add(new Mora(Mora.Consonant._d_j , Mora.Vowel._i)); }// d_j  i
-      else if (kana.startsWith("でゅ", i) || kana.startsWith("デュ", i)) { list.add(new Mora(Mora.Consonant._d_j , Mora.Vowel._M)); }// d_j  M
-      else if (kana.startsWith("どぅ", i) || kana.startsWith("ドゥ", i)) { list.add(new Mora(Mora.Consonant._d   , Mora.Vowel._M)); }// d    M
-      else if (kana.startsWith("うぁ", i) || kana.startsWith("ウァ", i)) { list.add(new Mora(Mora.Consonant._w   , Mora.Vowel._a)); }// w    a
-      else if (kana.startsWith("うぃ", i) || kana.startsWith("ウィ", i)) { list.add(new Mora(Mora.Consonant._w   , Mora.Vowel._i)); }// w    i
-      else if (kana.startsWith("うぇ", i) || kana.startsWith("ウェ", i)) { list.add(new Mora(Mora.Consonant._w   , Mora.Vowel._e)); }// w    e
-      else if (kana.startsWith("うぉ", i) || kana.startsWith("ウォ", i)) { list.add(new Mora(Mora.Consonant._w   , Mora.Vowel._o)); }// w    o
-      else if (kana.startsWith("ヴぁ", i) || kana.startsWith("ヴァ", i)) { list.add(new Mora(Mora.Consonant._v   , Mora.Vowel._a)); }// v    a
-      else if (kana.startsWith("ヴぃ", i) || kana.startsWith("ヴィ", i)) { list.add(new Mora(Mora.Consonant._v   , Mora.Vowel._i)); }// v    i
-      else if (kana.startsWith("ヴぇ", i) || kana.startsWith("ヴェ", i)) { list.add(new Mora(Mora.Consonant._v   , Mora.Vowel._e)); }// v    e
-      else if (kana.startsWith("ヴぉ", i) || kana.startsWith("ヴォ", i)) { list.add(new Mora(Mora.Consonant._v   , Mora.Vowel._o)); }// v    o
-      else if (kana.startsWith("くぁ", i) || kana.startsWith("クァ", i)) { list.add(new Mora(Mora.Consonant._k_w , Mora.Vowel._a)); }// k_w  a
-      else if (kana.startsWith("くぃ", i) || kana.startsWith("クィ", i)) { list.add(new Mora(Mora.Consonant._k_w , Mora.Vowel._i)); }// k_w  i
-      else if (kana.startsWith("くぇ", i) || kana.startsWith("クェ", i)) { list.add(new Mora(Mora.Consonant._k_w , Mora.Vowel._e)); }// k_w  e
-      else if (kana.startsWith("くぉ", i) || kana.startsWith("クォ", i)) { list.add(new Mora(Mora.Consonant._k_w , Mora.Vowel._o)); }// k_w  o
-      else if (kana.startsWith("ぐぁ", i) || kana.startsWith("グァ", i)) { list.add(new Mora(Mora.Consonant._g_w , Mora.Vowel._a)); }// g_w  a
-      else if (kana.startsWith("ぐぃ", i) || kana.startsWith("グィ", i)) { list.add(new Mora(Mora.Consonant._g_w , Mora.Vowel._i)); }// g_w  i
-      else if (kana.startsWith("ぐぇ", i) || kana.startsWith("グェ", i)) { list.add(new Mora(Mora.Consonant._g_w , Mora.Vowel._e)); }// g_w  e
-      else if (kana.startsWith("ぐぉ", i) || kana.startsWith("グォ", i)) { list.add(new Mora(Mora.Consonant._g_w , Mora.Vowel._o)); }// g_w  o
-      else if (kana.startsWith("いぇ", i) || kana.startsWith("イェ", i)) { list.add(new Mora(Mora.Consonant._j   , Mora.Vowel._e)); }// j    e
-      else {
-        switch (kana.charAt(i)) {
-        case 'あ': case 'ア': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel._a  )); } break;                   //      a
-        case 'い': case 'イ': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel._i  )); } break;                   //      i
-        case 'う': case 'ウ': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel._M  )); } break;                   //      M
-        case 'え': case 'エ': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel._e  )); } break;                   //      e
-        case 'お': case 'オ': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel._o  )); } break;                   //      o
-        case 'か': case 'カ': { list.add(new Mora(Mora.Consonant._k  , Mora.Vowel._a  )); } break;                   // k    a
-        case 'き': case 'キ': { list.add(new Mora(Mora.Consonant._k_j, Mora.Vowel._i  )); } break;                   // k_j  i
-        case 'く': case 'ク': { list.add(new Mora(Mora.Consonant._k  , Mora.Vowel._M  )); } break;                   // k    M
-        case 'け': case 'ケ': { list.add(new Mora(Mora.Consonant._k  , Mora.Vowel._e  )); } break;                   // k    e
-        case 'こ': case 'コ': { list.add(new Mora(Mora.Consonant._k  , Mora.Vowel._o  )); } break;                   // k    o
-        case 'が': case 'ガ': { list.add(new Mora(Mora.Consonant._g  , Mora.Vowel._a  )); } break;                   // g    a
-        case 'ぎ': case 'ギ': { list.add(new Mora(Mora.Consonant._g_j, Mora.Vowel._i  )); } break;                   // g_j  i
-        case 'ぐ': case 'グ': { list.add(new Mora(Mora.Consonant._g  , Mora.Vowel._M  )); } break;                   // g    M
-        case 'げ': case 'ゲ': { list.add(new Mora(Mora.Consonant._g  , Mora.Vowel._e  )); } break;                   // g    e
-        case 'ご': case 'ゴ': { list.add(new Mora(Mora.Consonant._g  , Mora.Vowel._o  )); } break;                   // g    o
-        case 'さ': case 'サ': { list.add(new Mora(Mora.Consonant._s  , Mora.Vowel._a  )); } break;                   // s    a
-        case 'し': case 'シ': { list.add(new Mora(Mora.Consonant._S  , Mora.Vowel._i  )); } break;                   // S    i
-        case 'す': case 'ス': { list.add(new Mora(Mora.Consonant._s  , Mora.Vowel._M  )); } break;                   // s    M
-        case 'せ': case 'セ': { list.add(new Mora(Mora.Consonant._s  , Mora.Vowel._e  )); } break;                   // s    e
-        case 'そ': case 'ソ': { list.add(new Mora(Mora.Consonant._s  , Mora.Vowel._o  )); } break;                   // s    o
-        case 'ざ': case 'ザ': { list.add(new Mora(Mora.Consonant._dz , Mora.Vowel._a  )); } break;                   // dz   a
-        case 'じ': case 'ジ': { list.add(new Mora(Mora.Consonant._dZ , Mora.Vowel._i  )); } break;                   // dZ   i
-        case 'ず': case 'ズ': { list.add(new Mora(Mora.Consonant._dz , Mora.Vowel._M  )); } break;                   // dz   M
-        case 'ぜ': case 'ゼ': { list.add(new Mora(Mora.Consonant._dz , Mora.Vowel._e  )); } break;                   // dz   e
-        case 'ぞ': case 'ゾ': { list.add(new Mora(Mora.Consonant._dz , Mora.Vowel._o  )); } break;                   // dz   o
-        case 'た': case 'タ': { list.add(new Mora(Mora.Consonant._t  , Mora.Vowel._a  )); } break;                   // t    a
-        case 'ち': case 'チ': { list.add(new Mora(Mora.Consonant._tS , Mora.Vowel._i  )); } break;                   // tS   i
-        case 'つ': case 'ツ': { list.add(new Mora(Mora.Consonant._ts , Mora.Vowel._M  )); } break;                   // ts   M
-        case 'て': case 'テ': { list.add(new Mora(Mora.Consonant._t  , Mora.Vowel._e  )); } break;                   // t    e
-        case 'と': case 'ト': { list.add(new Mora(Mora.Consonant._t  , Mora.Vowel._o  )); } break;                   // t    o
-        case 'だ': case 'ダ': { list.add(new Mora(Mora.Consonant._d  , Mora.Vowel._a  )); } break;                   // d    a
-        case 'ぢ': case 'ヂ': { list.add(new Mora(Mora.Consonant._dZ , Mora.Vowel._i  )); } break;                   // dZ   i
-        case 'づ': case 'ヅ': { list.add(new Mora(Mora.Consonant._dz , Mora.Vowel._M  )); } break;                   // dz   M
-        case 'で': case 'デ': { list.add(new Mora(Mora.Consonant._d  , Mora.Vowel._e  )); } break;                   // d    e
-        case 'ど': case 'ド': { list.add(new Mora(Mora.Consonant._d  , Mora.Vowel._o  )); } break;                   // d    o
-        case 'な': case 'ナ': { list.add(new Mora(Mora.Consonant._n  , Mora.Vowel._a  )); } break;                   // n    a
-        case 'に': case 'ニ': { list.add(new Mora(Mora.Consonant._J  , Mora.Vowel._i  )); } break;                   // J    i
-        case 'ぬ': case 'ヌ': { list.add(new Mora(Mora.Consonant._n  , Mora.Vowel._M  )); } break;                   // n    M
-        case 'ね': case 'ネ': { list.add(new Mora(Mora.Consonant._n  , Mora.Vowel._e  )); } break;                   // n    e
-        case 'の': case 'ノ': { list.add(new Mora(Mora.Consonant._n  , Mora.Vowel._o  )); } break;                   // n    o
-        case 'は': case 'ハ': { list.add(new Mora(Mora.Consonant._h  , Mora.Vowel._a  )); } break;                   // h    a
-        case 'ひ': case 'ヒ': { list.add(new Mora(Mora.Consonant._C  , Mora.Vowel._i  )); } break;                   // C    i
-        case 'ふ': case 'フ': { list.add(new Mora(Mora.Consonant._pb , Mora.Vowel._M  )); } break;                   // p\   M
-        case 'へ': case 'ヘ': { list.add(new Mora(Mora.Consonant._h  , Mora.Vowel._e  )); } break;                   // h    e
-        case 'ほ': case 'ホ': { list.add(new Mora(Mora.Consonant._h  , Mora.Vowel._o  )); } break;                   // h    o
-        case 'ば': case 'バ': { list.add(new Mora(Mora.Consonant._b  , Mora.Vowel._a  )); } break;                   // b    a
-        case 'び': case 'ビ': { list.add(new Mora(Mora.Consonant._b_j, Mora.Vowel._i  )); } break;                   // b_j  i
-        case 'ぶ': case 'ブ': { list.add(new Mora(Mora.Consonant._b  , Mora.Vowel._M  )); } break;                   // b    M
-        case 'べ': case 'ベ': { list.add(new Mora(Mora.Consonant._b  , Mora.Vowel._e  )); } break;                   // b    e
-        case 'ぼ': case 'ボ': { list.add(new Mora(Mora.Consonant._b  , Mora.Vowel._o  )); } break;                   // b    o
-        case 'ぱ': case 'パ': { list.add(new Mora(Mora.Consonant._p  , Mora.Vowel._a  )); } break;                   // p    a
-        case 'ぴ': case 'ピ': { list.add(new Mora(Mora.Consonant._p_j, Mora.Vowel._i  )); } break;                   // p_j  i
-        case 'ぷ': case 'プ': { list.add(new Mora(Mora.Consonant._p  , Mora.Vowel._M  )); } break;                   // p    M
-        case 'ぺ': case 'ペ': { list.add(new Mora(Mora.Consonant._p  , Mora.Vowel._e  )); } break;                   // p    e
-        case 'ぽ': case 'ポ': { list.add(new Mora(Mora.Consonant._p  , Mora.Vowel._o  )); } break;                   // p    o
-        case 'ま': case 'マ': { list.add(new Mora(Mora.Consonant._m  , Mora.Vowel._a  )); } break;                   // m    a
-        case 'み': case 'ミ': { list.add(new Mora(Mora.Consonant._m_j, Mora.Vowel._i  )); } break;                   // m_j  i
-        case 'む': case 'ム': { list.add(new Mora(Mora.Consonant._m  , Mora.Vowel._M  )); } break;                   // m    M
-        case 'め': case 'メ': { list.add(new Mora(Mora.Consonant._m  , Mora.Vowel._e  )); } break;                   // m    e
-        case 'も': case 'モ': { list.add(new Mora(Mora.Consonant._m  , Mora.Vowel._o  )); } break;                   // m    o
-        case 'や': case 'ヤ': { list.add(new Mora(Mora.Consonant._j  , Mora.Vowel._a  )); } break;                   // j    a
-        case 'ゆ': case 'ユ': { list.add(new Mora(Mora.Consonant._j  , Mora.Vowel._M  )); } break;                   // j    M
-        case 'よ': case 'ヨ': { list.add(new Mora(Mora.Consonant._j  , Mora.Vowel._o  )); } break;                   // j    o
-        case 'ら': case 'ラ': { list.add(new Mora(Mora.Consonant._4  , Mora.Vowel._a  )); } break;                   // 4    a
-        case 'り': case 'リ': { list.add(new Mora(Mora.Consonant._4_j, Mora.Vowel._i  )); } break;                   // 4_j  i
-        case 'る': case 'ル': { list.add(new Mora(Mora.Consonant._4  , Mora.Vowel._M  )); } break;                   // 4    M
-        case 'れ': case 'レ': { list.add(new Mora(Mora.Consonant._4  , Mora.Vowel._e  )); } break;                   // 4    e
-        case 'ろ': case 'ロ': { list.add(new Mora(Mora.Consonant._4  , Mora.Vowel._o  )); } break;                   // 4    o
-        case 'わ': case 'ワ': { list.add(new Mora(Mora.Consonant._w  , Mora.Vowel._a  )); } break;                   // w    a
-        case 'を': case 'ヲ': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel._o  )); } break;                   //      o
-        case 'ん': case 'ン': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel.none)); } break;                   // N
-        case 'っ': case 'ッ': { list.add(new Mora(Mora.Consonant.none, Mora.Vowel.none)); } break;                   // ^
-        case 'ー': if (!list.isEmpty()) { list.add(list.get(list.size()-1).getVowelMora()); } break;                   // -
-
-        case 'a' : { list.add(new Mora(Mora.Consonant.any  , Mora.Vowel._a  )); } break;
-        case 'i' : { list.add(new Mora(Mora.Consonant.any  , Mora.Vowel._i  )); } break;
-        case 'u' : { list.add(new Mora(Mora.Consonant.any  , Mora.Vowel._M  )); } break;
-        case 'e' : { list.add(new Mora(Mora.Consonant.any  , Mora.Vowel._e  )); } break;
-        case 'o' : { list.add(new Mora(Mora.Consonant.any  , Mora.Vowel._o  )); } break;
-        case '.' : { list.add(new Mora(Mora.Consonant.any  , Mora.Vowel.any )); } break;
-
-        case 'k' : { list.add(new Mora(Mora.Consonant._k   , Mora.Vowel.any )); } break;
-        case 'K' : { list.add(new Mora(Mora.Consonant._k_j , Mora.Vowel.any )); } break;
-        case 'q' : { list.add(new Mora(Mora.Consonant._k_w , Mora.Vowel.any )); } break;
-        case 'g' : { list.add(new Mora(Mora.Consonant._g   , Mora.Vowel.any )); } break;
-        case 'G' : { list.add(new Mora(Mora.Consonant._g_j , Mora.Vowel.any )); } break;
-        case 'Q' : { list.add(new Mora(Mora.Consonant._g_w , Mora.Vowel.any )); } break;
-        case 't' : { list.add(new Mora(Mora.Consonant._t   , Mora.Vowel.any )); } break;
-        case 'T' : { list.add(new Mora(Mora.Consonant._t_j , Mora.Vowel.any )); } break;
-        case 'd' : { list.add(new Mora(Mora.Consonant._d   , Mora.Vowel.any )); } break;
-        case 'D' : { list.add(new Mora(Mora.Consonant._d_j , Mora.Vowel.any )); } break;
-        case 'p' : { list.add(new Mora(Mora.Consonant._p   , Mora.Vowel.any )); } break;
-        case 'P' : { list.add(new Mora(Mora.Consonant._p_j , Mora.Vowel.any )); } break;
-        case 'b' : { list.add(new Mora(Mora.Consonant._b   , Mora.Vowel.any )); } break;
-        case 'B' : { list.add(new Mora(Mora.Consonant._b_j , Mora.Vowel.any )); } break;
-        case 'm' : { list.add(new Mora(Mora.Consonant._m   , Mora.Vowel.any )); } break;
-        case 'M' : { list.add(new Mora(Mora.Consonant._m_j , Mora.Vowel.any )); } break;
-        case 'r' : { list.add(new Mora(Mora.Consonant._4   , Mora.Vowel.any )); } break;
-        case 'R' : { list.add(new Mora(Mora.Consonant._4_j , Mora.Vowel.any )); } break;
-        case 's' : { list.add(new Mora(Mora.Consonant._s   , Mora.Vowel.any )); } break;
-        case 'S' : { list.add(new Mora(Mora.Consonant._S   , Mora.Vowel.any )); } break;
-        case 'n' : { list.add(new Mora(Mora.Consonant._n   , Mora.Vowel.any )); } break;
-        case 'N' : { list.add(new Mora(Mora.Consonant._J   , Mora.Vowel.any )); } break;
-        case 'h' : { list.add(new Mora(Mora.Consonant._h   , Mora.Vowel.any )); } break;
-        case 'H' : { list.add(new Mora(Mora.Consonant._C   , Mora.Vowel.any )); } break;
-        case 'y' : { list.add(new Mora(Mora.Consonant._j   , Mora.Vowel.any )); } break;
-        case 'w' : { list.add(new Mora(Mora.Consonant._w   , Mora.Vowel.any )); } break;
-        case 'v' : { list.add(new Mora(Mora.Consonant._v   , Mora.Vowel.any )); } break;
-        case 'z' : { list.add(new Mora(Mora.Consonant._dz  , Mora.Vowel.any )); } break;
-        case 'Z' : { list.add(new Mora(Mora.Consonant._dZ  , Mora.Vowel.any )); } break;
-        case 'c' : { list.add(new Mora(Mora.Consonant._ts  , Mora.Vowel.any )); } break;
-        case 'C' : { list.add(new Mora(Mora.Consonant._tS  , Mora.Vowel.any )); } break;
-        case 'f' : { list.add(new Mora(Mora.Consonant._pb  , Mora.Vowel.any )); } break;
-        case 'F' : { list.add(new Mora(Mora.Consonant._pb_j, Mora.Vowel.any )); } break;
-
-        case '\'': if (!list.isEmpty()) { list.add(list.remove(list.size()-1).cloneAccent   ()); } break; // 強勢を付与
-        case '^' : if (!list.isEmpty()) { list.add(list.remove(list.size()-1).cloneConsonant()); } break; // 母音を削除
-        case '-' : if (!list.isEmpty()) { list.add(list.remove(list.size()-1).cloneVowel    ()); } break; // 子音を削除
-
-        case 'ァ': case 'ィ': case 'ゥ':
-        case 'ェ': case 'ォ': case 'ヮ':
-        default:
-          javax.swing.JOptionPane.showMessageDialog(null,
-            kana + " (" + kana.charAt(i) + ")",
-            "対応していない発音です",
-            javax.swing.JOptionPane.ERROR_MESSAGE);
-          return new Mora[0];
+      final int c = Word.index(kana.charAt(i));
+      short m = (c >= 0) ? SINGLE[c] : NONE;
+
+      // 小書きの文字が続けば、二文字で一モーラ
+      if ((c >= 0) && (c < KANA_SIZE) && (i + 1 < length)) {
+        final int k = Word.index(kana.charAt(i+1));
+        final int s = ((k >= 0) && (k < KANA_SIZE)) ? SMALL[k] : -1;
+        if ((s >= 0) && (PAIR[c * SMALLS.length() + s] != NONE)) {
+          m = PAIR[c * SMALLS.length() + s];
+          ++i;
         }
-        --i;
       }
-      ++i;
+
+      if (m >= 0) {
+        buffer[n++] = m;
+        continue;
+      }
+      switch (m) {
+      case LONG        : if (n > offset) { buffer[n] = Mora.getVowelMora(buffer[n-1]); ++n; } break; // 長音
+      case ACCENT      : if (n > offset) { buffer[n-1] = Mora.cloneAccent   (buffer[n-1]); } break; // 強勢を付与
+      case NO_VOWEL    : if (n > offset) { buffer[n-1] = Mora.cloneConsonant(buffer[n-1]); } break; // 母音を削除
+      case NO_CONSONANT: if (n > offset) { buffer[n-1] = Mora.cloneVowel    (buffer[n-1]); } break; // 子音を削除
+      default:
+        throw new IllegalArgumentException("対応していない発音です: " + kana + " (" + kana.charAt(i) + ")");
+      }
+    }
+    return n - offset;
+  }
+
+  // 文字の表の添字。ひらがな・カタカナ (U+3040 から U+30FF) の後に ASCII を置く。表に無い文字は -1。
+  private static int index(final char c) {
+    if (c < 0x80) {
+      return KANA_SIZE + c;
+    }
+    final int k = c - KANA_BASE;
+    return ((k >= 0) && (k < KANA_SIZE)) ? k : -1;
+  }
+
+  // 読みの表。一文字で決まるモーラ (SINGLE) と、小書きの文字が続いて決まるモーラ (PAIR) を引く。
+  // モーラは負にならないので、負の値は対応していない文字と、直前のモーラを変える指定に使う。
+  private static final char  KANA_BASE    = '\u3040';
+  private static final int   KANA_SIZE    = 0xC0;
+  private static final short NONE         = -1; // 対応していない
+  private static final short LONG         = -2; // ー
+  private static final short ACCENT       = -3; // '
+  private static final short NO_VOWEL     = -4; // ^
+  private static final short NO_CONSONANT = -5; // -
+
+  // 二文字目に来る小書きの文字
+  private static final String SMALLS = "ぁぃぅぇぉゃゅょァィゥェォャュョ";
+
+  private static final short[] SINGLE = new short[KANA_SIZE + 0x80];
+  private static final byte [] SMALL  = new byte [KANA_SIZE];
+  private static final short[] PAIR   = new short[KANA_SIZE * SMALLS.length()];
+  static {
+    Arrays.fill(SINGLE, NONE);
+    Arrays.fill(SMALL , (byte)-1);
+    Arrays.fill(PAIR  , NONE);
+    for (int i = 0, size = SMALLS.length(); i < size; ++i) {
+      SMALL[Word.index(SMALLS.charAt(i))] = (byte)i;
+    }
+
+    Word.pair  ("きゃ", "キャ", Mora.Consonant._k_j , Mora.Vowel._a); // k_j  a
+    Word.pair  ("きゅ", "キュ", Mora.Consonant._k_j , Mora.Vowel._M); // k_j  M
+    Word.pair  ("きぇ", "キェ", Mora.Consonant._k_j , Mora.Vowel._e); // k_j  e
+    Word.pair  ("きょ", "キョ", Mora.Consonant._k_j , Mora.Vowel._o); // k_j  o
+    Word.pair  ("ぎゃ", "ギャ", Mora.Consonant._g_j , Mora.Vowel._a); // g_j  a
+    Word.pair  ("ぎゅ", "ギュ", Mora.Consonant._g_j , Mora.Vowel._M); // g_j  M
+    Word.pair  ("ぎぇ", "ギェ", Mora.Consonant._g_j , Mora.Vowel._e); // g_j  e
+    Word.pair  ("ぎょ", "ギョ", Mora.Consonant._g_j , Mora.Vowel._o); // g_j  o
+    Word.pair  ("しゃ", "シャ", Mora.Consonant._S   , Mora.Vowel._a); // S    a
+    Word.pair  ("しゅ", "シュ", Mora.Consonant._S   , Mora.Vowel._M); // S    M
+    Word.pair  ("しぇ", "シェ", Mora.Consonant._S   , Mora.Vowel._e); // S    e
+    Word.pair  ("しょ", "ショ", Mora.Consonant._S   , Mora.Vowel._o); // S    o
+    Word.pair  ("じゃ", "ジャ", Mora.Consonant._dZ  , Mora.Vowel._a); // dZ   a
+    Word.pair  ("じゅ", "ジュ", Mora.Consonant._dZ  , Mora.Vowel._M); // dZ   M
+    Word.pair  ("じぇ", "ジェ", Mora.Consonant._dZ  , Mora.Vowel._e); // dZ   e
+    Word.pair  ("じょ", "ジョ", Mora.Consonant._dZ  , Mora.Vowel._o); // dZ   o
+    Word.pair  ("ぢゃ", "ヂャ", Mora.Consonant._dZ  , Mora.Vowel._a); // dZ   a
+    Word.pair  ("ぢゅ", "ヂュ", Mora.Consonant._dZ  , Mora.Vowel._M); // dZ   M
+    Word.pair  ("ぢぇ", "ヂェ", Mora.Consonant._dZ  , Mora.Vowel._e); // dZ   e
+    Word.pair  ("ぢょ", "ヂョ", Mora.Consonant._dZ  , Mora.Vowel._o); // dZ   o
+    Word.pair  ("つぁ", "ツァ", Mora.Consonant._ts  , Mora.Vowel._a); // ts   a
+    Word.pair  ("つぃ", "ツィ", Mora.Consonant._ts  , Mora.Vowel._M); // ts   i
+    Word.pair  ("つぇ", "ツェ", Mora.Consonant._ts  , Mora.Vowel._e); // ts   e
+    Word.pair  ("つぉ", "ツォ", Mora.Consonant._ts  , Mora.Vowel._o); // ts   o
+    Word.pair  ("ちゃ", "チャ", Mora.Consonant._tS  , Mora.Vowel._a); // tS   a
+    Word.pair  ("ちゅ", "チュ", Mora.Consonant._tS  , Mora.Vowel._M); // tS   M
+    Word.pair  ("ちぇ", "チェ", Mora.Consonant._tS  , Mora.Vowel._e); // tS   e
+    Word.pair  ("ちょ", "チョ", Mora.Consonant._tS  , Mora.Vowel._o); // tS   o
+    Word.pair  ("にゃ", "ニャ", Mora.Consonant._J   , Mora.Vowel._a); // J    a
+    Word.pair  ("にゅ", "ニュ", Mora.Consonant._J   , Mora.Vowel._M); // J    M
+    Word.pair  ("にぇ", "ニェ", Mora.Consonant._J   , Mora.Vowel._e); // J    e
+    Word.pair  ("にょ", "ニョ", Mora.Consonant._J   , Mora.Vowel._o); // J    o
+    Word.pair  ("ひゃ", "ヒャ", Mora.Consonant._C   , Mora.Vowel._a); // C    a
+    Word.pair  ("ひゅ", "ヒュ", Mora.Consonant._C   , Mora.Vowel._M); // C    M
+    Word.pair  ("ひぇ", "ヒェ", Mora.Consonant._C   , Mora.Vowel._e); // C    e
+    Word.pair  ("ひょ", "ヒョ", Mora.Consonant._C   , Mora.Vowel._o); // C    o
+    Word.pair  ("びゃ", "ビャ", Mora.Consonant._b_j , Mora.Vowel._a); // b_j  a
+    Word.pair  ("びゅ", "ビュ", Mora.Consonant._b_j , Mora.Vowel._M); // b_j  M
+    Word.pair  ("びぇ", "ビェ", Mora.Consonant._b_j , Mora.Vowel._e); // b_j  e
+    Word.pair  ("びょ", "ビョ", Mora.Consonant._b_j , Mora.Vowel._o); // b_j  o
+    Word.pair  ("ぴゃ", "ピャ", Mora.Consonant._p_j , Mora.Vowel._a); // p_j  a
+    Word.pair  ("ぴゅ", "ピュ", Mora.Consonant._p_j , Mora.Vowel._M); // P_j  M
+    Word.pair  ("ぴぇ", "ピェ", Mora.Consonant._p_j , Mora.Vowel._e); // p_j  e
+    Word.pair  ("ぴょ", "ピョ", Mora.Consonant._p_j , Mora.Vowel._o); // p_j  o
+    Word.pair  ("みゃ", "ミャ", Mora.Consonant._m_j , Mora.Vowel._a); // m_j  a
+    Word.pair  ("みゅ", "ミュ", Mora.Consonant._m_j , Mora.Vowel._M); // m_j  M
+    Word.pair  ("みぇ", "ミェ", Mora.Consonant._m_j , Mora.Vowel._e); // m_j  e
+    Word.pair  ("みょ", "ミョ", Mora.Consonant._m_j , Mora.Vowel._o); // m_j  o
+    Word.pair  ("りゃ", "リャ", Mora.Consonant._4_j , Mora.Vowel._a); // 4_j  a
+    Word.pair  ("りゅ", "リュ", Mora.Consonant._4_j , Mora.Vowel._M); // 4_j  M
+    Word.pair  ("りぇ", "リェ", Mora.Consonant._4_j , Mora.Vowel._e); // 4_j  e
+    Word.pair  ("りょ", "リョ", Mora.Consonant._4_j , Mora.Vowel._o); // 4_j  o
+    Word.pair  ("ふぁ", "ファ", Mora.Consonant._pb  , Mora.Vowel._a); // p\   a
+    Word.pair  ("ふぃ", "フィ", Mora.Consonant._pb_j, Mora.Vowel._M); // p\_j i
+    Word.pair  ("ふゅ", "フュ", Mora.Consonant._pb_j, Mora.Vowel._e); // p\_j e
+    Word.pair  ("ふぇ", "フェ", Mora.Consonant._pb  , Mora.Vowel._e); // p\   e
+    Word.pair  ("ふぉ", "フォ", Mora.Consonant._pb  , Mora.Vowel._o); // p\   o
+    Word.pair  ("すぃ", "スィ", Mora.Consonant._s   , Mora.Vowel._i); // s    i
+    Word.pair  ("ずぃ", "ズィ", Mora.Consonant._dz  , Mora.Vowel._i); // dz   i
+    Word.pair  ("てぃ", "ティ", Mora.Consonant._t_j , Mora.Vowel._i); // t_j  i
+    Word.pair  ("てゅ", "テュ", Mora.Consonant._t_j , Mora.Vowel._M); // t_j  M
+    Word.pair  ("とぅ", "トゥ", Mora.Consonant._t   , Mora.Vowel._M); // t    M
+    Word.pair  ("でぃ", "ディ", Mora.Consonant._d_j , Mora.Vowel._i); // d_j  i
+    Word.pair  ("でゅ", "デュ", Mora.Consonant._d_j , Mora.Vowel._M); // d_j  M
+    Word.pair  ("どぅ", "ドゥ", Mora.Consonant._d   , Mora.Vowel._M); // d    M
+    Word.pair  ("うぁ", "ウァ", Mora.Consonant._w   , Mora.Vowel._a); // w    a
+    Word.pair  ("うぃ", "ウィ", Mora.Consonant._w   , Mora.Vowel._i); // w    i
+    Word.pair  ("うぇ", "ウェ", Mora.Consonant._w   , Mora.Vowel._e); // w    e
+    Word.pair  ("うぉ", "ウォ", Mora.Consonant._w   , Mora.Vowel._o); // w    o
+    Word.pair  ("ヴぁ", "ヴァ", Mora.Consonant._v   , Mora.Vowel._a); // v    a
+    Word.pair  ("ヴぃ", "ヴィ", Mora.Consonant._v   , Mora.Vowel._i); // v    i
+    Word.pair  ("ヴぇ", "ヴェ", Mora.Consonant._v   , Mora.Vowel._e); // v    e
+    Word.pair  ("ヴぉ", "ヴォ", Mora.Consonant._v   , Mora.Vowel._o); // v    o
+    Word.pair  ("くぁ", "クァ", Mora.Consonant._k_w , Mora.Vowel._a); // k_w  a
+    Word.pair  ("くぃ", "クィ", Mora.Consonant._k_w , Mora.Vowel._i); // k_w  i
+    Word.pair  ("くぇ", "クェ", Mora.Consonant._k_w , Mora.Vowel._e); // k_w  e
+    Word.pair  ("くぉ", "クォ", Mora.Consonant._k_w , Mora.Vowel._o); // k_w  o
+    Word.pair  ("ぐぁ", "グァ", Mora.Consonant._g_w , Mora.Vowel._a); // g_w  a
+    Word.pair  ("ぐぃ", "グィ", Mora.Consonant._g_w , Mora.Vowel._i); // g_w  i
+    Word.pair  ("ぐぇ", "グェ", Mora.Consonant._g_w , Mora.Vowel._e); // g_w  e
+    Word.pair  ("ぐぉ", "グォ", Mora.Consonant._g_w , Mora.Vowel._o); // g_w  o
+    Word.pair  ("いぇ", "イェ", Mora.Consonant._j   , Mora.Vowel._e); // j    e
+
+    Word.single("あア", Mora.Consonant.none, Mora.Vowel._a); //      a
+    Word.single("いイ", Mora.Consonant.none, Mora.Vowel._i); //      i
+    Word.single("うウ", Mora.Consonant.none, Mora.Vowel._M); //      M
+    Word.single("えエ", Mora.Consonant.none, Mora.Vowel._e); //      e
+    Word.single("おオ", Mora.Consonant.none, Mora.Vowel._o); //      o
+    Word.single("かカ", Mora.Consonant._k  , Mora.Vowel._a); // k    a
+    Word.single("きキ", Mora.Consonant._k_j, Mora.Vowel._i); // k_j  i
+    Word.single("くク", Mora.Consonant._k  , Mora.Vowel._M); // k    M
+    Word.single("けケ", Mora.Consonant._k  , Mora.Vowel._e); // k    e
+    Word.single("こコ", Mora.Consonant._k  , Mora.Vowel._o); // k    o
+    Word.single("がガ", Mora.Consonant._g  , Mora.Vowel._a); // g    a
+    Word.single("ぎギ", Mora.Consonant._g_j, Mora.Vowel._i); // g_j  i
+    Word.single("ぐグ", Mora.Consonant._g  , Mora.Vowel._M); // g    M
+    Word.single("げゲ", Mora.Consonant._g  , Mora.Vowel._e); // g    e
+    Word.single("ごゴ", Mora.Consonant._g  , Mora.Vowel._o); // g    o
+    Word.single("さサ", Mora.Consonant._s  , Mora.Vowel._a); // s    a
+    Word.single("しシ", Mora.Consonant._S  , Mora.Vowel._i); // S    i
+    Word.single("すス", Mora.Consonant._s  , Mora.Vowel._M); // s    M
+    Word.single("せセ", Mora.Consonant._s  , Mora.Vowel._e); // s    e
+    Word.single("そソ", Mora.Consonant._s  , Mora.Vowel._o); // s    o
+    Word.single("ざザ", Mora.Consonant._dz , Mora.Vowel._a); // dz   a
+    Word.single("じジ", Mora.Consonant._dZ , Mora.Vowel._i); // dZ   i
+    Word.single("ずズ", Mora.Consonant._dz , Mora.Vowel._M); // dz   M
+    Word.single("ぜゼ", Mora.Consonant._dz , Mora.Vowel._e); // dz   e
+    Word.single("ぞゾ", Mora.Consonant._dz , Mora.Vowel._o); // dz   o
+    Word.single("たタ", Mora.Consonant._t  , Mora.Vowel._a); // t    a
+    Word.single("ちチ", Mora.Consonant._tS , Mora.Vowel._i); // tS   i
+    Word.single("つツ", Mora.Consonant._ts , Mora.Vowel._M); // ts   M
+    Word.single("てテ", Mora.Consonant._t  , Mora.Vowel._e); // t    e
+    Word.single("とト", Mora.Consonant._t  , Mora.Vowel._o); // t    o
+    Word.single("だダ", Mora.Consonant._d  , Mora.Vowel._a); // d    a
+    Word.single("ぢヂ", Mora.Consonant._dZ , Mora.Vowel._i); // dZ   i
+    Word.single("づヅ", Mora.Consonant._dz , Mora.Vowel._M); // dz   M
+    Word.single("でデ", Mora.Consonant._d  , Mora.Vowel._e); // d    e
+    Word.single("どド", Mora.Consonant._d  , Mora.Vowel._o); // d    o
+    Word.single("なナ", Mora.Consonant._n  , Mora.Vowel._a); // n    a
+    Word.single("にニ", Mora.Consonant._J  , Mora.Vowel._i); // J    i
+    Word.single("ぬヌ", Mora.Consonant._n  , Mora.Vowel._M); // n    M
+    Word.single("ねネ", Mora.Consonant._n  , Mora.Vowel._e); // n    e
+    Word.single("のノ", Mora.Consonant._n  , Mora.Vowel._o); // n    o
+    Word.single("はハ", Mora.Consonant._h  , Mora.Vowel._a); // h    a
+    Word.single("ひヒ", Mora.Consonant._C  , Mora.Vowel._i); // C    i
+    Word.single("ふフ", Mora.Consonant._pb , Mora.Vowel._M); // p\   M
+    Word.single("へヘ", Mora.Consonant._h  , Mora.Vowel._e); // h    e
+    Word.single("ほホ", Mora.Consonant._h  , Mora.Vowel._o); // h    o
+    Word.single("ばバ", Mora.Consonant._b  , Mora.Vowel._a); // b    a
+    Word.single("びビ", Mora.Consonant._b_j, Mora.Vowel._i); // b_j  i
+    Word.single("ぶブ", Mora.Consonant._b  , Mora.Vowel._M); // b    M
+    Word.single("べベ", Mora.Consonant._b  , Mora.Vowel._e); // b    e
+    Word.single("ぼボ", Mora.Consonant._b  , Mora.Vowel._o); // b    o
+    Word.single("ぱパ", Mora.Consonant._p  , Mora.Vowel._a); // p    a
+    Word.single("ぴピ", Mora.Consonant._p_j, Mora.Vowel._i); // p_j  i
+    Word.single("ぷプ", Mora.Consonant._p  , Mora.Vowel._M); // p    M
+    Word.single("ぺペ", Mora.Consonant._p  , Mora.Vowel._e); // p    e
+    Word.single("ぽポ", Mora.Consonant._p  , Mora.Vowel._o); // p    o
+    Word.single("まマ", Mora.Consonant._m  , Mora.Vowel._a); // m    a
+    Word.single("みミ", Mora.Consonant._m_j, Mora.Vowel._i); // m_j  i
+    Word.single("むム", Mora.Consonant._m  , Mora.Vowel._M); // m    M
+    Word.single("めメ", Mora.Consonant._m  , Mora.Vowel._e); // m    e
+    Word.single("もモ", Mora.Consonant._m  , Mora.Vowel._o); // m    o
+    Word.single("やヤ", Mora.Consonant._j  , Mora.Vowel._a); // j    a
+    Word.single("ゆユ", Mora.Consonant._j  , Mora.Vowel._M); // j    M
+    Word.single("よヨ", Mora.Consonant._j  , Mora.Vowel._o); // j    o
+    Word.single("らラ", Mora.Consonant._4  , Mora.Vowel._a); // 4    a
+    Word.single("りリ", Mora.Consonant._4_j, Mora.Vowel._i); // 4_j  i
+    Word.single("るル", Mora.Consonant._4  , Mora.Vowel._M); // 4    M
+    Word.single("れレ", Mora.Consonant._4  , Mora.Vowel._e); // 4    e
+    Word.single("ろロ", Mora.Consonant._4  , Mora.Vowel._o); // 4    o
+    Word.single("わワ", Mora.Consonant._w  , Mora.Vowel._a); // w    a
+    Word.single("をヲ", Mora.Consonant.none, Mora.Vowel._o); //      o
+    Word.single("んン", Mora.Consonant.none, Mora.Vowel.none); // N
+    Word.single("っッ", Mora.Consonant.none, Mora.Vowel.none); // ^
+    SINGLE[Word.index('ー')] = LONG; // -
+
+    Word.single("a"  , Mora.Consonant.any  , Mora.Vowel._a);
+    Word.single("i"  , Mora.Consonant.any  , Mora.Vowel._i);
+    Word.single("u"  , Mora.Consonant.any  , Mora.Vowel._M);
+    Word.single("e"  , Mora.Consonant.any  , Mora.Vowel._e);
+    Word.single("o"  , Mora.Consonant.any  , Mora.Vowel._o);
+    Word.single("."  , Mora.Consonant.any  , Mora.Vowel.any);
+    Word.single("k"  , Mora.Consonant._k   , Mora.Vowel.any);
+    Word.single("K"  , Mora.Consonant._k_j , Mora.Vowel.any);
+    Word.single("q"  , Mora.Consonant._k_w , Mora.Vowel.any);
+    Word.single("g"  , Mora.Consonant._g   , Mora.Vowel.any);
+    Word.single("G"  , Mora.Consonant._g_j , Mora.Vowel.any);
+    Word.single("Q"  , Mora.Consonant._g_w , Mora.Vowel.any);
+    Word.single("t"  , Mora.Consonant._t   , Mora.Vowel.any);
+    Word.single("T"  , Mora.Consonant._t_j , Mora.Vowel.any);
+    Word.single("d"  , Mora.Consonant._d   , Mora.Vowel.any);
+    Word.single("D"  , Mora.Consonant._d_j , Mora.Vowel.any);
+    Word.single("p"  , Mora.Consonant._p   , Mora.Vowel.any);
+    Word.single("P"  , Mora.Consonant._p_j , Mora.Vowel.any);
+    Word.single("b"  , Mora.Consonant._b   , Mora.Vowel.any);
+    Word.single("B"  , Mora.Consonant._b_j , Mora.Vowel.any);
+    Word.single("m"  , Mora.Consonant._m   , Mora.Vowel.any);
+    Word.single("M"  , Mora.Consonant._m_j , Mora.Vowel.any);
+    Word.single("r"  , Mora.Consonant._4   , Mora.Vowel.any);
+    Word.single("R"  , Mora.Consonant._4_j , Mora.Vowel.any);
+    Word.single("s"  , Mora.Consonant._s   , Mora.Vowel.any);
+    Word.single("S"  , Mora.Consonant._S   , Mora.Vowel.any);
+    Word.single("n"  , Mora.Consonant._n   , Mora.Vowel.any);
+    Word.single("N"  , Mora.Consonant._J   , Mora.Vowel.any);
+    Word.single("h"  , Mora.Consonant._h   , Mora.Vowel.any);
+    Word.single("H"  , Mora.Consonant._C   , Mora.Vowel.any);
+    Word.single("y"  , Mora.Consonant._j   , Mora.Vowel.any);
+    Word.single("w"  , Mora.Consonant._w   , Mora.Vowel.any);
+    Word.single("v"  , Mora.Consonant._v   , Mora.Vowel.any);
+    Word.single("z"  , Mora.Consonant._dz  , Mora.Vowel.any);
+    Word.single("Z"  , Mora.Consonant._dZ  , Mora.Vowel.any);
+    Word.single("c"  , Mora.Consonant._ts  , Mora.Vowel.any);
+    Word.single("C"  , Mora.Consonant._tS  , Mora.Vowel.any);
+    Word.single("f"  , Mora.Consonant._pb  , Mora.Vowel.any);
+    Word.single("F"  , Mora.Consonant._pb_j, Mora.Vowel.any);
+
+    SINGLE[Word.index('\'')] = ACCENT;
+    SINGLE[Word.index('^' )] = NO_VOWEL;
+    SINGLE[Word.index('-' )] = NO_CONSONANT;
+  }
+
+  private static void single(final String chars, final Mora.Consonant c, final Mora.Vowel v) {
+    for (int i = 0, size = chars.length(); i < size; ++i) {
+      SINGLE[Word.index(chars.charAt(i))] = Mora.of(c, v);
+    }
+  }
+
+  private static void pair(final String hiragana, final String katakana, final Mora.Consonant c, final Mora.Vowel v) {
+    for (final String kana : new String[] { hiragana, katakana }) {
+      PAIR[Word.index(kana.charAt(0)) * SMALLS.length() + SMALL[Word.index(kana.charAt(1))]] = Mora.of(c, v);
     }
-    return list.toArray(new Mora[list.size()]);
   }
 }
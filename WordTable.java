@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 辞書の単語を列ごとに連続した配列へ並べたもの。
+ * 単語は辞書内の番号 (id) で参照する。
+ */
+final class WordTable {
+  private static final int CONSONANTS = Mora.CONSONANT_COUNT;
+
+  private final short[] mora;    // 全単語のモーラを連結したもの
+  private final int[]   offset;  // 単語 id のモーラは mora[offset[id]] から mora[offset[id+1]] の手前まで
+  private final int[]   feature; // 単語 id の品詞 (Dictionary.MASK_*)
+
+  // 母音列を前から (後ろから) 比べたときの順位と、その逆引き。
+  // 同じ距離の候補はこの順に並べる。
+  private final int[] rankNext;
+  private final int[] rankPrev;
+  private final int[] byRankNext;
+  private final int[] byRankPrev;
+
+  public WordTable(final Word[] words) {
+    final int size = words.length;
+
+    this.offset  = new int[size + 1];
+    this.feature = new int[size];
+    for (int i = 0; i < size; ++i) {
+      offset [i+1] = offset[i] + words[i].getMora().length;
+      feature[i]   = words[i].getFeature();
+    }
+
+    this.mora = new short[offset[size]];
+    for (int i = 0; i < size; ++i) {
+      final short[] m = words[i].getMora();
+      System.arraycopy(m, 0, mora, offset[i], m.length);
+    }
+
+    this.byRankNext = this.order(false);
+    this.byRankPrev = this.order(true);
+    this.rankNext = WordTable.inverse(byRankNext);
+    this.rankPrev = WordTable.inverse(byRankPrev);
+  }
+
+  public int size() {
+    return feature.length;
+  }
+
+  public int length(final int id) {
+    return offset[id+1] - offset[id];
+  }
+
+  public int feature(final int id) {
+    return feature[id];
+  }
+
+  // 中間韻は辞書の順 (番号順) に並べる
+  public int rank(final int mode, final int id) {
+    switch (mode) {
+    case Dictionary.INTERNAL: return id;
+    case Dictionary.TAIL    : return rankPrev[id];
+    default                 : return rankNext[id];
+    }
+  }
+
+  public int byRank(final int mode, final int rank) {
+    switch (mode) {
+    case Dictionary.INTERNAL: return rank;
+    case Dictionary.TAIL    : return byRankPrev[rank];
+    default                 : return byRankNext[rank];
+    }
+  }
+
+  /**
+   * 候補 ids[0..count) と query との距離をまとめて distance に書き出す。
+   * Word.distance / distanceHead / distanceTail と同じ値になる。
+   */
+  public void distance(final int mode, final short[] query, final int[] ids, final int count, final int[] distance) {
+    this.distance(mode, new Profile(query), ids, count, distance);
+  }
+
+  public void distance(final int mode, final Profile profile, final int[] ids, final int count, final int[] distance) {
+    final int[]   scaled = profile.scaled;
+    final int[]   plain  = profile.plain;
+    final int     length = profile.length;
+    final short[] mora   = this.mora;
+    final int[]   offset = this.offset;
+    for (int i = 0; i < count; ++i) {
+      final int id    = ids[i];
+      final int begin = offset[id];
+      final int size  = offset[id+1] - begin;
+      if ((mode == Dictionary.STRICT) ? (size != length) : (size < length)) {
+        distance[i] = Integer.MAX_VALUE;
+        continue;
+      }
+
+      final int base = (mode == Dictionary.TAIL) ? (begin + size - length) : begin;
+      int sum = 0;
+      for (int j = 0, k = 0; j < length; ++j, k += CONSONANTS) {
+        final short m = mora[base + j];
+        final int   c = Mora.consonant(m);
+        final int   d = scaled[k + c];
+        if (d < 0) {
+          sum = Integer.MAX_VALUE;
+          break;
+        }
+        sum += d + Mora.accent(m) * plain[k + c];
+      }
+      distance[i] = sum;
+    }
+  }
+
+  /**
+   * 問い合わせのモーラごとに、単語側の子音に対する距離を引いておいたもの。
+   */
+  public static final class Profile {
+    private final int   length;
+    private final int[] scaled; // 問い合わせ側の強勢を掛けた距離
+    private final int[] plain;  // 単語側の強勢に掛ける距離
+
+    public Profile(final short[] query) {
+      this.length = query.length;
+      this.scaled = new int[length * CONSONANTS];
+      this.plain  = new int[length * CONSONANTS];
+      for (int j = 0; j < length; ++j) {
+        final int consonant = Mora.consonant(query[j]);
+        final int accent    = 1 + Mora.accent(query[j]);
+        for (int c = 0; c < CONSONANTS; ++c) {
+          final int d = Mora.consonantDistance(consonant, c);
+          scaled[j * CONSONANTS + c] = (d < 0) ? -1 : accent * d;
+          plain [j * CONSONANTS + c] = d;
+        }
+      }
+    }
+  }
+
+  private int[] order(final boolean reverse) {
+    final Integer[] ids = new Integer[this.size()];
+    for (int i = 0, size = ids.length; i < size; ++i) {
+      ids[i] = i;
+    }
+    Arrays.sort(ids, new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer a, final Integer b) {
+        final int c = WordTable.this.compareVowels(a, b, reverse);
+        return (c != 0) ? c : (a - b);
+      }
+    });
+
+    final int[] order = new int[ids.length];
+    for (int i = 0, size = ids.length; i < size; ++i) {
+      order[i] = ids[i];
+    }
+    return order;
+  }
+
+  private int compareVowels(final int a, final int b, final boolean reverse) {
+    final int la = this.length(a);
+    final int lb = this.length(b);
+    for (int i = 0, size = Math.min(la, lb); i < size; ++i) {
+      final int va = Mora.vowel(mora[reverse ? (offset[a+1]-1-i) : (offset[a]+i)]);
+      final int vb = Mora.vowel(mora[reverse ? (offset[b+1]-1-i) : (offset[b]+i)]);
+      if (va != vb) {
+        return va - vb;
+      }
+    }
+    return la - lb;
+  }
+
+  private static int[] inverse(final int[] order) {
+    final int[] inverse = new int[order.length];
+    for (int i = 0, size = order.length; i < size; ++i) {
+      inverse[order[i]] = i;
+    }
+    return inverse;
+  }
+}
@@ -0,0 +1,204 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 木と転置索引を使う検索が、全ての単語を一つずつ調べて並べた結果 (総当たり) と同じになるかを確かめる。
+ * 同梱の辞書 (dic/) をそのまま使う。
+ */
+public class DictionaryTest {
+  // 読み・子音や母音だけの指定・強勢・長音・ん・っ を混ぜた問い合わせ
+  private static final String[] QUERIES = {
+    "か", "かた", "らっぷ", "おんがく", "とうきょう", "いえ", "しゅっちょう", "ラーメン",
+    "a", "ai", "a.a.", "....o", "ka", "kata", "こ'", "k^a", "S", "N", "Q",
+  };
+
+  private static final int[] MASKS = {
+    Dictionary.MASK_ALL,
+    Dictionary.MASK_VERB | Dictionary.MASK_ADJECTIVE,
+    Dictionary.MASK_NOUM_DA | Dictionary.MASK_VERB_DEPENDENT_5R,
+  };
+
+  private static final String[] BLACKLISTS = { "", "か", "a", "k" };
+
+  private static Dictionary dictionary;
+  private static Word[]     words;
+
+  @BeforeClass
+  public static void load() {
+    dictionary = new Dictionary.Builder().cache(0, 0).build();
+    words      = new Dictionary.Builder().parse();
+  }
+
+  // 押韻・頭韻・脚韻・中間韻 (品詞と除くモーラの指定を含む)
+  @Test
+  public void rankIsBruteForce() {
+    for (final String query : QUERIES) {
+      final short[] q = Word.toMora(query);
+      for (int mode = Dictionary.STRICT; mode <= Dictionary.INTERNAL; ++mode) {
+        for (final int mask : MASKS) {
+          for (final String blacklist : BLACKLISTS) {
+            final short[] b = Word.toMora(blacklist);
+            DictionaryTest.assertRanking(mode, query + " " + mode + " " + mask + " " + blacklist,
+              DictionaryTest.bruteForce(mode, q, mask, b),
+              dictionary.rank(mode, q, mask, b));
+          }
+        }
+      }
+    }
+  }
+
+  // 距離の上限と個数を区切った検索 (押韻・頭韻・脚韻と半韻)
+  @Test
+  public void boundedRankIsBruteForce() {
+    final int[] modes = { Dictionary.STRICT, Dictionary.HEAD, Dictionary.TAIL, Dictionary.ALIGN };
+    for (final String query : QUERIES) {
+      final short[] q = Word.toMora(query);
+      for (final int mode : modes) {
+        for (final int mask : MASKS) {
+          final List<Entry> all = DictionaryTest.bruteForce(mode, q, mask, new short[0]);
+          for (final int maxDistance : new int[] { 0, 3, 8, 16, Integer.MAX_VALUE }) {
+            for (final int limit : new int[] { 0, 1, 20 }) {
+              if ((mode == Dictionary.ALIGN) && (maxDistance == Integer.MAX_VALUE) && (limit == 0)) {
+                continue; // 全ての単語になる
+              }
+              DictionaryTest.assertRanking(mode, query + " " + mode + " " + mask + " " + maxDistance + " " + limit,
+                DictionaryTest.bound(all, maxDistance, limit),
+                dictionary.rank(mode, q, mask, maxDistance, limit));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // 一モーラずつ伸ばしたり縮めたりするカーソルが、同じ問い合わせの rank と同じになるか
+  @Test
+  public void cursorIsRank() {
+    for (final String query : QUERIES) {
+      final short[] q = Word.toMora(query);
+      for (int mode = Dictionary.STRICT; mode <= Dictionary.TAIL; ++mode) {
+        for (final String blacklist : BLACKLISTS) {
+          final short[] b = Word.toMora(blacklist);
+          final Dictionary.Cursor cursor = dictionary.cursor(mode, Dictionary.MASK_ALL, b);
+          for (int i = 0; i < q.length; ++i) {
+            cursor.push((mode == Dictionary.TAIL) ? q[q.length - 1 - i] : q[i]);
+            DictionaryTest.assertSame(query + " " + mode + " " + blacklist + " push " + i,
+              dictionary.rank(mode, cursor.query(), Dictionary.MASK_ALL, b), cursor.rank());
+          }
+          while (cursor.length() > 1) {
+            cursor.pop();
+            DictionaryTest.assertSame(query + " " + mode + " " + blacklist + " pop " + cursor.length(),
+              dictionary.rank(mode, cursor.query(), Dictionary.MASK_ALL, b), cursor.rank());
+          }
+        }
+      }
+    }
+  }
+
+  // 総当たりの検索。距離 (中間韻は 0) の昇順、等しければ Word.compare の順に並べる。
+  private static List<Entry> bruteForce(final int mode, final short[] query, final int mask, final short[] blacklist) {
+    final long[] set = Mora.set(blacklist);
+    final List<Entry> entries = new ArrayList<Entry>();
+    for (final Word word : words) {
+      if (((word.getFeature() & mask) == 0) || word.contains(set)) {
+        continue;
+      }
+      final int distance = DictionaryTest.distance(mode, word, query);
+      if (distance != Integer.MAX_VALUE) {
+        entries.add(new Entry(word, distance));
+      }
+    }
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(final Entry a, final Entry b) {
+        if (a.distance != b.distance) {
+          return (a.distance < b.distance) ? -1 : 1;
+        }
+        return Word.compare(mode, a.word, b.word);
+      }
+    });
+    return entries;
+  }
+
+  // 距離が maxDistance 以下の先頭から高々 limit 個 (limit が 0 なら全て)
+  private static List<Entry> bound(final List<Entry> entries, final int maxDistance, final int limit) {
+    final List<Entry> bounded = new ArrayList<Entry>();
+    for (final Entry entry : entries) {
+      if ((entry.distance > maxDistance) || ((limit > 0) && (bounded.size() >= limit))) {
+        break;
+      }
+      bounded.add(entry);
+    }
+    return bounded;
+  }
+
+  // 一致しなければ Integer.MAX_VALUE を返す。
+  // 押韻は同じ長さ、頭韻・脚韻は問い合わせより長い単語の、先頭・末尾の各モーラが Word.substitution で対応するもの。
+  private static int distance(final int mode, final Word word, final short[] query) {
+    final int length = word.getMora().length;
+    switch (mode) {
+    case Dictionary.STRICT  : return (length == query.length) ? DictionaryTest.substitution(word, query, 0) : Integer.MAX_VALUE;
+    case Dictionary.HEAD    : return (length >  query.length) ? DictionaryTest.substitution(word, query, 0) : Integer.MAX_VALUE;
+    case Dictionary.TAIL    : return (length >  query.length) ? DictionaryTest.substitution(word, query, length - query.length) : Integer.MAX_VALUE;
+    case Dictionary.INTERNAL: return word.matchInternal(query) ? 0 : Integer.MAX_VALUE;
+    case Dictionary.ALIGN   : return word.distanceAlign(query);
+    default                 : throw new IllegalArgumentException("mode: " + mode);
+    }
+  }
+
+  // query を単語の offset 番目のモーラから対応させた費用の和
+  private static int substitution(final Word word, final short[] query, final int offset) {
+    final short[] mora = word.getMora();
+    int distance = 0;
+    for (int i = 0; i < query.length; ++i) {
+      final int d = Word.substitution(query[i], mora[offset + i]);
+      if (d < 0) {
+        return Integer.MAX_VALUE;
+      }
+      distance += d;
+    }
+    return distance;
+  }
+
+  private static void assertRanking(final int mode, final String message, final List<Entry> expected, final Ranking actual) {
+    final Word[] words = actual.toArray();
+    assertEquals(message, expected.size(), words.length);
+    for (int i = 0; i < words.length; ++i) {
+      final Entry entry = expected.get(i);
+      assertEquals(message + " [" + i + "]", DictionaryTest.key(entry.word), DictionaryTest.key(words[i]));
+      if (mode != Dictionary.INTERNAL) {
+        assertEquals(message + " [" + i + "]", entry.distance, actual.distance(i));
+      }
+    }
+  }
+
+  private static void assertSame(final String message, final Ranking expected, final Ranking actual) {
+    final Word[] e = expected.toArray();
+    final Word[] a = actual.toArray();
+    assertEquals(message, e.length, a.length);
+    for (int i = 0; i < e.length; ++i) {
+      assertEquals(message + " [" + i + "]", DictionaryTest.key(e[i]), DictionaryTest.key(a[i]));
+    }
+  }
+
+  private static String key(final Word word) {
+    return word.getKana() + "/" + word.getWords() + "/" + word.getFeature();
+  }
+
+  private static final class Entry {
+    final Word word;
+    final int  distance;
+
+    Entry(final Word word, final int distance) {
+      this.word     = word;
+      this.distance = distance;
+    }
+  }
+}
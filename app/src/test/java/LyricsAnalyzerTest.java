@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 空白や句読点を含む行からも、脚韻と繰り返しを見つけるかを確かめる。
+ */
+public class LyricsAnalyzerTest {
+  @Test
+  public void separatedLines() {
+    final List<String> found = LyricsAnalyzerTest.analyze(
+      "あいうえお かきくけこ",
+      "いろは、にほへと",
+      "いろはにほへと。",
+      "さしすせそ　たちつてと",
+      "「ほへと」");
+    assertEquals(6, found.size());
+    assertEquals("repeat 0 6 5 0 0", found.get(0)); // かきくけこ と あいうえお
+    assertEquals("repeat 2 0 3 1 0", found.get(1)); // いろは
+    assertEquals("end 2 4 [1]"     , found.get(2)); // にほへと
+    assertEquals("repeat 3 0 5 0 6", found.get(3)); // さしすせそ
+    assertEquals("end 3 5 [0]"     , found.get(4)); // たちつてと と かきくけこ
+    assertEquals("end 4 3 [1, 2]"  , found.get(5)); // ほへと
+  }
+
+  // 空白や句読点は区切り一つになり、その前後の読みは別々に変換する
+  @Test
+  public void separatorsBecomeOneBreak() {
+    final short[] buffer = new short[32];
+    final int n = LyricsAnalyzer.toMora("、 いろは 「ー」 にほへと。", buffer);
+    final short[] iroha    = Word.toMora("いろは");
+    final short[] nihoheto = Word.toMora("にほへと");
+    assertEquals(iroha.length + 1 + nihoheto.length, n);
+    for (int i = 0; i < iroha.length; ++i) {
+      assertEquals(iroha[i], buffer[i]);
+    }
+    assertEquals(Mora.VOWEL_ANY, Mora.vowel(buffer[iroha.length]));
+    for (int i = 0; i < nihoheto.length; ++i) {
+      assertEquals(nihoheto[i], buffer[iroha.length + 1 + i]);
+    }
+  }
+
+  // 区切りのない行は、以前と同じく行全体で調べる
+  @Test
+  public void plainLines() {
+    final List<String> found = LyricsAnalyzerTest.analyze("かたなのさきに", "あしたのさきに");
+    assertArrayEquals(new String[] { "end 1 5 [0]" }, found.toArray());
+  }
+
+  private static List<String> analyze(final String... lines) {
+    final List<String> found = new ArrayList<String>();
+    final LyricsAnalyzer analyzer = new LyricsAnalyzer(3, new LyricsAnalyzer.Listener() {
+      @Override
+      public void endRhyme(final int line, final int length, final int[] lines) {
+        found.add("end " + line + " " + length + " " + Arrays.toString(lines));
+      }
+
+      @Override
+      public void repeat(final int line, final int from, final int length, final int otherLine, final int otherFrom) {
+        found.add("repeat " + line + " " + from + " " + length + " " + otherLine + " " + otherFrom);
+      }
+    });
+    for (final String line : lines) {
+      analyzer.add(line);
+    }
+    return found;
+  }
+}
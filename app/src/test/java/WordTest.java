@@ -0,0 +1,305 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.net.URL;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 表を引く Word.toMora が、以前の一文字ずつ比べる変換 (reference) と同じ結果になるかを確かめる。
+ * モーラの列か、投げた例外の文言が食い違えば失敗する。
+ */
+public class WordTest {
+  // 辞書の全ての読み (変換できないものも含めて、ファイルの一列目をそのまま)
+  @Test
+  public void toMoraOfReadings() throws IOException {
+    for (int i = 0, size = Dictionary.NAMES.length; i < size; ++i) {
+      final URL dictionary = Dictionary.source(i);
+      if (dictionary == null) {
+        continue;
+      }
+      final BufferedReader in = new BufferedReader(new InputStreamReader(dictionary.openStream(), "UTF-8"));
+      try {
+        String line;
+        while ((line = in.readLine()) != null) {
+          line = line.trim();
+          if (!line.isEmpty()) {
+            WordTest.check(line.split("\\s")[0]);
+          }
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  // 一文字だけの全ての文字
+  @Test
+  public void toMoraOfCharacters() {
+    for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; ++c) {
+      WordTest.check(String.valueOf((char)c));
+    }
+  }
+
+  // かなと指定の文字 (拗音の組み合わせや、先頭の ' ^ - ー を含む) を無作為に並べた列
+  @Test
+  public void toMoraOfRandomStrings() {
+    final StringBuilder alphabet = new StringBuilder("'^-.aiMeoNQkgsSzZtdcCnhHpbfFmjyrwvー");
+    for (char c = 'ぁ'; c <= 'ゖ'; ++c) {
+      alphabet.append(c);
+    }
+    for (char c = 'ァ'; c <= 'ヺ'; ++c) {
+      alphabet.append(c);
+    }
+    final Random random = new Random(0);
+    for (int k = 0; k < 200000; ++k) {
+      final char[] kana = new char[1 + random.nextInt(8)];
+      for (int i = 0; i < kana.length; ++i) {
+        kana[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+      }
+      WordTest.check(new String(kana));
+    }
+  }
+
+  private static void check(final String kana) {
+    assertEquals(kana, WordTest.convert(kana, true), WordTest.convert(kana, false));
+  }
+
+  // 変換の結果を比べられる文字列にする
+  private static String convert(final String kana, final boolean reference) {
+    try {
+      return Arrays.toString(reference ? WordTest.reference(kana) : Word.toMora(kana));
+    } catch (final IllegalArgumentException e) {
+      return "IllegalArgumentException: " + e.getMessage();
+    }
+  }
+
+  /**
+   * 表にする前の Word.toMora をそのまま写したもの。
+   */
+  private static short[] reference(final String kana) {
+    // 一文字から高々一モーラしか生成されないので、文字数分あれば足りる。
+    final short[] buffer = new short[kana.length()];
+    int n = 0;
+    for (int i = 0, length = kana.length(); i < length; ++i) {
+           if (kana.startsWith("きゃ", i) || kana.startsWith("キャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_j , Mora.Vowel._a); }// k_j  a
+      else if (kana.startsWith("きゅ", i) || kana.startsWith("キュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_j , Mora.Vowel._M); }// k_j  M
+      else if (kana.startsWith("きぇ", i) || kana.startsWith("キェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_j , Mora.Vowel._e); }// k_j  e
+      else if (kana.startsWith("きょ", i) || kana.startsWith("キョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_j , Mora.Vowel._o); }// k_j  o
+      else if (kana.startsWith("ぎゃ", i) || kana.startsWith("ギャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_j , Mora.Vowel._a); }// g_j  a
+      else if (kana.startsWith("ぎゅ", i) || kana.startsWith("ギュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_j , Mora.Vowel._M); }// g_j  M
+      else if (kana.startsWith("ぎぇ", i) || kana.startsWith("ギェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_j , Mora.Vowel._e); }// g_j  e
+      else if (kana.startsWith("ぎょ", i) || kana.startsWith("ギョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_j , Mora.Vowel._o); }// g_j  o
+      else if (kana.startsWith("しゃ", i) || kana.startsWith("シャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._S   , Mora.Vowel._a); }// S    a
+      else if (kana.startsWith("しゅ", i) || kana.startsWith("シュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._S   , Mora.Vowel._M); }// S    M
+      else if (kana.startsWith("しぇ", i) || kana.startsWith("シェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._S   , Mora.Vowel._e); }// S    e
+      else if (kana.startsWith("しょ", i) || kana.startsWith("ショ", i)) { buffer[n++] = Mora.of(Mora.Consonant._S   , Mora.Vowel._o); }// S    o
+      else if (kana.startsWith("じゃ", i) || kana.startsWith("ジャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._a); }// dZ   a
+      else if (kana.startsWith("じゅ", i) || kana.startsWith("ジュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._M); }// dZ   M
+      else if (kana.startsWith("じぇ", i) || kana.startsWith("ジェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._e); }// dZ   e
+      else if (kana.startsWith("じょ", i) || kana.startsWith("ジョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._o); }// dZ   o
+      else if (kana.startsWith("ぢゃ", i) || kana.startsWith("ヂャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._a); }// dZ   a
+      else if (kana.startsWith("ぢゅ", i) || kana.startsWith("ヂュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._M); }// dZ   M
+      else if (kana.startsWith("ぢぇ", i) || kana.startsWith("ヂェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._e); }// dZ   e
+      else if (kana.startsWith("ぢょ", i) || kana.startsWith("ヂョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel._o); }// dZ   o
+      else if (kana.startsWith("つぁ", i) || kana.startsWith("ツァ", i)) { buffer[n++] = Mora.of(Mora.Consonant._ts  , Mora.Vowel._a); }// ts   a
+      else if (kana.startsWith("つぃ", i) || kana.startsWith("ツィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._ts  , Mora.Vowel._M); }// ts   i
+      else if (kana.startsWith("つぇ", i) || kana.startsWith("ツェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._ts  , Mora.Vowel._e); }// ts   e
+      else if (kana.startsWith("つぉ", i) || kana.startsWith("ツォ", i)) { buffer[n++] = Mora.of(Mora.Consonant._ts  , Mora.Vowel._o); }// ts   o
+      else if (kana.startsWith("ちゃ", i) || kana.startsWith("チャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._tS  , Mora.Vowel._a); }// tS   a
+      else if (kana.startsWith("ちゅ", i) || kana.startsWith("チュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._tS  , Mora.Vowel._M); }// tS   M
+      else if (kana.startsWith("ちぇ", i) || kana.startsWith("チェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._tS  , Mora.Vowel._e); }// tS   e
+      else if (kana.startsWith("ちょ", i) || kana.startsWith("チョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._tS  , Mora.Vowel._o); }// tS   o
+      else if (kana.startsWith("にゃ", i) || kana.startsWith("ニャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._J   , Mora.Vowel._a); }// J    a
+      else if (kana.startsWith("にゅ", i) || kana.startsWith("ニュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._J   , Mora.Vowel._M); }// J    M
+      else if (kana.startsWith("にぇ", i) || kana.startsWith("ニェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._J   , Mora.Vowel._e); }// J    e
+      else if (kana.startsWith("にょ", i) || kana.startsWith("ニョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._J   , Mora.Vowel._o); }// J    o
+      else if (kana.startsWith("ひゃ", i) || kana.startsWith("ヒャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._C   , Mora.Vowel._a); }// C    a
+      else if (kana.startsWith("ひゅ", i) || kana.startsWith("ヒュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._C   , Mora.Vowel._M); }// C    M
+      else if (kana.startsWith("ひぇ", i) || kana.startsWith("ヒェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._C   , Mora.Vowel._e); }// C    e
+      else if (kana.startsWith("ひょ", i) || kana.startsWith("ヒョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._C   , Mora.Vowel._o); }// C    o
+      else if (kana.startsWith("びゃ", i) || kana.startsWith("ビャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._b_j , Mora.Vowel._a); }// b_j  a
+      else if (kana.startsWith("びゅ", i) || kana.startsWith("ビュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._b_j , Mora.Vowel._M); }// b_j  M
+      else if (kana.startsWith("びぇ", i) || kana.startsWith("ビェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._b_j , Mora.Vowel._e); }// b_j  e
+      else if (kana.startsWith("びょ", i) || kana.startsWith("ビョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._b_j , Mora.Vowel._o); }// b_j  o
+      else if (kana.startsWith("ぴゃ", i) || kana.startsWith("ピャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._p_j , Mora.Vowel._a); }// p_j  a
+      else if (kana.startsWith("ぴゅ", i) || kana.startsWith("ピュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._p_j , Mora.Vowel._M); }// P_j  M
+      else if (kana.startsWith("ぴぇ", i) || kana.startsWith("ピェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._p_j , Mora.Vowel._e); }// p_j  e
+      else if (kana.startsWith("ぴょ", i) || kana.startsWith("ピョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._p_j , Mora.Vowel._o); }// p_j  o
+      else if (kana.startsWith("みゃ", i) || kana.startsWith("ミャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._m_j , Mora.Vowel._a); }// m_j  a
+      else if (kana.startsWith("みゅ", i) || kana.startsWith("ミュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._m_j , Mora.Vowel._M); }// m_j  M
+      else if (kana.startsWith("みぇ", i) || kana.startsWith("ミェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._m_j , Mora.Vowel._e); }// m_j  e
+      else if (kana.startsWith("みょ", i) || kana.startsWith("ミョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._m_j , Mora.Vowel._o); }// m_j  o
+      else if (kana.startsWith("りゃ", i) || kana.startsWith("リャ", i)) { buffer[n++] = Mora.of(Mora.Consonant._4_j , Mora.Vowel._a); }// 4_j  a
+      else if (kana.startsWith("りゅ", i) || kana.startsWith("リュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._4_j , Mora.Vowel._M); }// 4_j  M
+      else if (kana.startsWith("りぇ", i) || kana.startsWith("リェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._4_j , Mora.Vowel._e); }// 4_j  e
+      else if (kana.startsWith("りょ", i) || kana.startsWith("リョ", i)) { buffer[n++] = Mora.of(Mora.Consonant._4_j , Mora.Vowel._o); }// 4_j  o
+      else if (kana.startsWith("ふぁ", i) || kana.startsWith("ファ", i)) { buffer[n++] = Mora.of(Mora.Consonant._pb  , Mora.Vowel._a); }// p\   a
+      else if (kana.startsWith("ふぃ", i) || kana.startsWith("フィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._pb_j, Mora.Vowel._M); }// p\_j i
+      else if (kana.startsWith("ふゅ", i) || kana.startsWith("フュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._pb_j, Mora.Vowel._e); }// p\_j e
+      else if (kana.startsWith("ふぇ", i) || kana.startsWith("フェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._pb  , Mora.Vowel._e); }// p\   e
+      else if (kana.startsWith("ふぉ", i) || kana.startsWith("フォ", i)) { buffer[n++] = Mora.of(Mora.Consonant._pb  , Mora.Vowel._o); }// p\   o
+      else if (kana.startsWith("すぃ", i) || kana.startsWith("スィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._s   , Mora.Vowel._i); }// s    i
+      else if (kana.startsWith("ずぃ", i) || kana.startsWith("ズィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._dz  , Mora.Vowel._i); }// dz   i
+      else if (kana.startsWith("てぃ", i) || kana.startsWith("ティ", i)) { buffer[n++] = Mora.of(Mora.Consonant._t_j , Mora.Vowel._i); }// t_j  i
+      else if (kana.startsWith("てゅ", i) || kana.startsWith("テュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._t_j , Mora.Vowel._M); }// t_j  M
+      else if (kana.startsWith("とぅ", i) || kana.startsWith("トゥ", i)) { buffer[n++] = Mora.of(Mora.Consonant._t   , Mora.Vowel._M); }// t    M
+      else if (kana.startsWith("でぃ", i) || kana.startsWith("ディ", i)) { buffer[n++] = Mora.of(Mora.Consonant._d_j , Mora.Vowel._i); }// d_j  i
+      else if (kana.startsWith("でゅ", i) || kana.startsWith("デュ", i)) { buffer[n++] = Mora.of(Mora.Consonant._d_j , Mora.Vowel._M); }// d_j  M
+      else if (kana.startsWith("どぅ", i) || kana.startsWith("ドゥ", i)) { buffer[n++] = Mora.of(Mora.Consonant._d   , Mora.Vowel._M); }// d    M
+      else if (kana.startsWith("うぁ", i) || kana.startsWith("ウァ", i)) { buffer[n++] = Mora.of(Mora.Consonant._w   , Mora.Vowel._a); }// w    a
+      else if (kana.startsWith("うぃ", i) || kana.startsWith("ウィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._w   , Mora.Vowel._i); }// w    i
+      else if (kana.startsWith("うぇ", i) || kana.startsWith("ウェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._w   , Mora.Vowel._e); }// w    e
+      else if (kana.startsWith("うぉ", i) || kana.startsWith("ウォ", i)) { buffer[n++] = Mora.of(Mora.Consonant._w   , Mora.Vowel._o); }// w    o
+      else if (kana.startsWith("ヴぁ", i) || kana.startsWith("ヴァ", i)) { buffer[n++] = Mora.of(Mora.Consonant._v   , Mora.Vowel._a); }// v    a
+      else if (kana.startsWith("ヴぃ", i) || kana.startsWith("ヴィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._v   , Mora.Vowel._i); }// v    i
+      else if (kana.startsWith("ヴぇ", i) || kana.startsWith("ヴェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._v   , Mora.Vowel._e); }// v    e
+      else if (kana.startsWith("ヴぉ", i) || kana.startsWith("ヴォ", i)) { buffer[n++] = Mora.of(Mora.Consonant._v   , Mora.Vowel._o); }// v    o
+      else if (kana.startsWith("くぁ", i) || kana.startsWith("クァ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_w , Mora.Vowel._a); }// k_w  a
+      else if (kana.startsWith("くぃ", i) || kana.startsWith("クィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_w , Mora.Vowel._i); }// k_w  i
+      else if (kana.startsWith("くぇ", i) || kana.startsWith("クェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_w , Mora.Vowel._e); }// k_w  e
+      else if (kana.startsWith("くぉ", i) || kana.startsWith("クォ", i)) { buffer[n++] = Mora.of(Mora.Consonant._k_w , Mora.Vowel._o); }// k_w  o
+      else if (kana.startsWith("ぐぁ", i) || kana.startsWith("グァ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_w , Mora.Vowel._a); }// g_w  a
+      else if (kana.startsWith("ぐぃ", i) || kana.startsWith("グィ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_w , Mora.Vowel._i); }// g_w  i
+      else if (kana.startsWith("ぐぇ", i) || kana.startsWith("グェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_w , Mora.Vowel._e); }// g_w  e
+      else if (kana.startsWith("ぐぉ", i) || kana.startsWith("グォ", i)) { buffer[n++] = Mora.of(Mora.Consonant._g_w , Mora.Vowel._o); }// g_w  o
+      else if (kana.startsWith("いぇ", i) || kana.startsWith("イェ", i)) { buffer[n++] = Mora.of(Mora.Consonant._j   , Mora.Vowel._e); }// j    e
+      else {
+        switch (kana.charAt(i)) {
+        case 'あ': case 'ア': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel._a  ); } break;                   //      a
+        case 'い': case 'イ': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel._i  ); } break;                   //      i
+        case 'う': case 'ウ': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel._M  ); } break;                   //      M
+        case 'え': case 'エ': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel._e  ); } break;                   //      e
+        case 'お': case 'オ': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel._o  ); } break;                   //      o
+        case 'か': case 'カ': { buffer[n++] = Mora.of(Mora.Consonant._k  , Mora.Vowel._a  ); } break;                   // k    a
+        case 'き': case 'キ': { buffer[n++] = Mora.of(Mora.Consonant._k_j, Mora.Vowel._i  ); } break;                   // k_j  i
+        case 'く': case 'ク': { buffer[n++] = Mora.of(Mora.Consonant._k  , Mora.Vowel._M  ); } break;                   // k    M
+        case 'け': case 'ケ': { buffer[n++] = Mora.of(Mora.Consonant._k  , Mora.Vowel._e  ); } break;                   // k    e
+        case 'こ': case 'コ': { buffer[n++] = Mora.of(Mora.Consonant._k  , Mora.Vowel._o  ); } break;                   // k    o
+        case 'が': case 'ガ': { buffer[n++] = Mora.of(Mora.Consonant._g  , Mora.Vowel._a  ); } break;                   // g    a
+        case 'ぎ': case 'ギ': { buffer[n++] = Mora.of(Mora.Consonant._g_j, Mora.Vowel._i  ); } break;                   // g_j  i
+        case 'ぐ': case 'グ': { buffer[n++] = Mora.of(Mora.Consonant._g  , Mora.Vowel._M  ); } break;                   // g    M
+        case 'げ': case 'ゲ': { buffer[n++] = Mora.of(Mora.Consonant._g  , Mora.Vowel._e  ); } break;                   // g    e
+        case 'ご': case 'ゴ': { buffer[n++] = Mora.of(Mora.Consonant._g  , Mora.Vowel._o  ); } break;                   // g    o
+        case 'さ': case 'サ': { buffer[n++] = Mora.of(Mora.Consonant._s  , Mora.Vowel._a  ); } break;                   // s    a
+        case 'し': case 'シ': { buffer[n++] = Mora.of(Mora.Consonant._S  , Mora.Vowel._i  ); } break;                   // S    i
+        case 'す': case 'ス': { buffer[n++] = Mora.of(Mora.Consonant._s  , Mora.Vowel._M  ); } break;                   // s    M
+        case 'せ': case 'セ': { buffer[n++] = Mora.of(Mora.Consonant._s  , Mora.Vowel._e  ); } break;                   // s    e
+        case 'そ': case 'ソ': { buffer[n++] = Mora.of(Mora.Consonant._s  , Mora.Vowel._o  ); } break;                   // s    o
+        case 'ざ': case 'ザ': { buffer[n++] = Mora.of(Mora.Consonant._dz , Mora.Vowel._a  ); } break;                   // dz   a
+        case 'じ': case 'ジ': { buffer[n++] = Mora.of(Mora.Consonant._dZ , Mora.Vowel._i  ); } break;                   // dZ   i
+        case 'ず': case 'ズ': { buffer[n++] = Mora.of(Mora.Consonant._dz , Mora.Vowel._M  ); } break;                   // dz   M
+        case 'ぜ': case 'ゼ': { buffer[n++] = Mora.of(Mora.Consonant._dz , Mora.Vowel._e  ); } break;                   // dz   e
+        case 'ぞ': case 'ゾ': { buffer[n++] = Mora.of(Mora.Consonant._dz , Mora.Vowel._o  ); } break;                   // dz   o
+        case 'た': case 'タ': { buffer[n++] = Mora.of(Mora.Consonant._t  , Mora.Vowel._a  ); } break;                   // t    a
+        case 'ち': case 'チ': { buffer[n++] = Mora.of(Mora.Consonant._tS , Mora.Vowel._i  ); } break;                   // tS   i
+        case 'つ': case 'ツ': { buffer[n++] = Mora.of(Mora.Consonant._ts , Mora.Vowel._M  ); } break;                   // ts   M
+        case 'て': case 'テ': { buffer[n++] = Mora.of(Mora.Consonant._t  , Mora.Vowel._e  ); } break;                   // t    e
+        case 'と': case 'ト': { buffer[n++] = Mora.of(Mora.Consonant._t  , Mora.Vowel._o  ); } break;                   // t    o
+        case 'だ': case 'ダ': { buffer[n++] = Mora.of(Mora.Consonant._d  , Mora.Vowel._a  ); } break;                   // d    a
+        case 'ぢ': case 'ヂ': { buffer[n++] = Mora.of(Mora.Consonant._dZ , Mora.Vowel._i  ); } break;                   // dZ   i
+        case 'づ': case 'ヅ': { buffer[n++] = Mora.of(Mora.Consonant._dz , Mora.Vowel._M  ); } break;                   // dz   M
+        case 'で': case 'デ': { buffer[n++] = Mora.of(Mora.Consonant._d  , Mora.Vowel._e  ); } break;                   // d    e
+        case 'ど': case 'ド': { buffer[n++] = Mora.of(Mora.Consonant._d  , Mora.Vowel._o  ); } break;                   // d    o
+        case 'な': case 'ナ': { buffer[n++] = Mora.of(Mora.Consonant._n  , Mora.Vowel._a  ); } break;                   // n    a
+        case 'に': case 'ニ': { buffer[n++] = Mora.of(Mora.Consonant._J  , Mora.Vowel._i  ); } break;                   // J    i
+        case 'ぬ': case 'ヌ': { buffer[n++] = Mora.of(Mora.Consonant._n  , Mora.Vowel._M  ); } break;                   // n    M
+        case 'ね': case 'ネ': { buffer[n++] = Mora.of(Mora.Consonant._n  , Mora.Vowel._e  ); } break;                   // n    e
+        case 'の': case 'ノ': { buffer[n++] = Mora.of(Mora.Consonant._n  , Mora.Vowel._o  ); } break;                   // n    o
+        case 'は': case 'ハ': { buffer[n++] = Mora.of(Mora.Consonant._h  , Mora.Vowel._a  ); } break;                   // h    a
+        case 'ひ': case 'ヒ': { buffer[n++] = Mora.of(Mora.Consonant._C  , Mora.Vowel._i  ); } break;                   // C    i
+        case 'ふ': case 'フ': { buffer[n++] = Mora.of(Mora.Consonant._pb , Mora.Vowel._M  ); } break;                   // p\   M
+        case 'へ': case 'ヘ': { buffer[n++] = Mora.of(Mora.Consonant._h  , Mora.Vowel._e  ); } break;                   // h    e
+        case 'ほ': case 'ホ': { buffer[n++] = Mora.of(Mora.Consonant._h  , Mora.Vowel._o  ); } break;                   // h    o
+        case 'ば': case 'バ': { buffer[n++] = Mora.of(Mora.Consonant._b  , Mora.Vowel._a  ); } break;                   // b    a
+        case 'び': case 'ビ': { buffer[n++] = Mora.of(Mora.Consonant._b_j, Mora.Vowel._i  ); } break;                   // b_j  i
+        case 'ぶ': case 'ブ': { buffer[n++] = Mora.of(Mora.Consonant._b  , Mora.Vowel._M  ); } break;                   // b    M
+        case 'べ': case 'ベ': { buffer[n++] = Mora.of(Mora.Consonant._b  , Mora.Vowel._e  ); } break;                   // b    e
+        case 'ぼ': case 'ボ': { buffer[n++] = Mora.of(Mora.Consonant._b  , Mora.Vowel._o  ); } break;                   // b    o
+        case 'ぱ': case 'パ': { buffer[n++] = Mora.of(Mora.Consonant._p  , Mora.Vowel._a  ); } break;                   // p    a
+        case 'ぴ': case 'ピ': { buffer[n++] = Mora.of(Mora.Consonant._p_j, Mora.Vowel._i  ); } break;                   // p_j  i
+        case 'ぷ': case 'プ': { buffer[n++] = Mora.of(Mora.Consonant._p  , Mora.Vowel._M  ); } break;                   // p    M
+        case 'ぺ': case 'ペ': { buffer[n++] = Mora.of(Mora.Consonant._p  , Mora.Vowel._e  ); } break;                   // p    e
+        case 'ぽ': case 'ポ': { buffer[n++] = Mora.of(Mora.Consonant._p  , Mora.Vowel._o  ); } break;                   // p    o
+        case 'ま': case 'マ': { buffer[n++] = Mora.of(Mora.Consonant._m  , Mora.Vowel._a  ); } break;                   // m    a
+        case 'み': case 'ミ': { buffer[n++] = Mora.of(Mora.Consonant._m_j, Mora.Vowel._i  ); } break;                   // m_j  i
+        case 'む': case 'ム': { buffer[n++] = Mora.of(Mora.Consonant._m  , Mora.Vowel._M  ); } break;                   // m    M
+        case 'め': case 'メ': { buffer[n++] = Mora.of(Mora.Consonant._m  , Mora.Vowel._e  ); } break;                   // m    e
+        case 'も': case 'モ': { buffer[n++] = Mora.of(Mora.Consonant._m  , Mora.Vowel._o  ); } break;                   // m    o
+        case 'や': case 'ヤ': { buffer[n++] = Mora.of(Mora.Consonant._j  , Mora.Vowel._a  ); } break;                   // j    a
+        case 'ゆ': case 'ユ': { buffer[n++] = Mora.of(Mora.Consonant._j  , Mora.Vowel._M  ); } break;                   // j    M
+        case 'よ': case 'ヨ': { buffer[n++] = Mora.of(Mora.Consonant._j  , Mora.Vowel._o  ); } break;                   // j    o
+        case 'ら': case 'ラ': { buffer[n++] = Mora.of(Mora.Consonant._4  , Mora.Vowel._a  ); } break;                   // 4    a
+        case 'り': case 'リ': { buffer[n++] = Mora.of(Mora.Consonant._4_j, Mora.Vowel._i  ); } break;                   // 4_j  i
+        case 'る': case 'ル': { buffer[n++] = Mora.of(Mora.Consonant._4  , Mora.Vowel._M  ); } break;                   // 4    M
+        case 'れ': case 'レ': { buffer[n++] = Mora.of(Mora.Consonant._4  , Mora.Vowel._e  ); } break;                   // 4    e
+        case 'ろ': case 'ロ': { buffer[n++] = Mora.of(Mora.Consonant._4  , Mora.Vowel._o  ); } break;                   // 4    o
+        case 'わ': case 'ワ': { buffer[n++] = Mora.of(Mora.Consonant._w  , Mora.Vowel._a  ); } break;                   // w    a
+        case 'を': case 'ヲ': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel._o  ); } break;                   //      o
+        case 'ん': case 'ン': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel.none); } break;                   // N
+        case 'っ': case 'ッ': { buffer[n++] = Mora.of(Mora.Consonant.none, Mora.Vowel.none); } break;                   // ^
+        case 'ー': if (n > 0) { buffer[n] = Mora.getVowelMora(buffer[n-1]); ++n; } break;                // -
+
+        case 'a' : { buffer[n++] = Mora.of(Mora.Consonant.any  , Mora.Vowel._a  ); } break;
+        case 'i' : { buffer[n++] = Mora.of(Mora.Consonant.any  , Mora.Vowel._i  ); } break;
+        case 'u' : { buffer[n++] = Mora.of(Mora.Consonant.any  , Mora.Vowel._M  ); } break;
+        case 'e' : { buffer[n++] = Mora.of(Mora.Consonant.any  , Mora.Vowel._e  ); } break;
+        case 'o' : { buffer[n++] = Mora.of(Mora.Consonant.any  , Mora.Vowel._o  ); } break;
+        case '.' : { buffer[n++] = Mora.of(Mora.Consonant.any  , Mora.Vowel.any ); } break;
+
+        case 'k' : { buffer[n++] = Mora.of(Mora.Consonant._k   , Mora.Vowel.any ); } break;
+        case 'K' : { buffer[n++] = Mora.of(Mora.Consonant._k_j , Mora.Vowel.any ); } break;
+        case 'q' : { buffer[n++] = Mora.of(Mora.Consonant._k_w , Mora.Vowel.any ); } break;
+        case 'g' : { buffer[n++] = Mora.of(Mora.Consonant._g   , Mora.Vowel.any ); } break;
+        case 'G' : { buffer[n++] = Mora.of(Mora.Consonant._g_j , Mora.Vowel.any ); } break;
+        case 'Q' : { buffer[n++] = Mora.of(Mora.Consonant._g_w , Mora.Vowel.any ); } break;
+        case 't' : { buffer[n++] = Mora.of(Mora.Consonant._t   , Mora.Vowel.any ); } break;
+        case 'T' : { buffer[n++] = Mora.of(Mora.Consonant._t_j , Mora.Vowel.any ); } break;
+        case 'd' : { buffer[n++] = Mora.of(Mora.Consonant._d   , Mora.Vowel.any ); } break;
+        case 'D' : { buffer[n++] = Mora.of(Mora.Consonant._d_j , Mora.Vowel.any ); } break;
+        case 'p' : { buffer[n++] = Mora.of(Mora.Consonant._p   , Mora.Vowel.any ); } break;
+        case 'P' : { buffer[n++] = Mora.of(Mora.Consonant._p_j , Mora.Vowel.any ); } break;
+        case 'b' : { buffer[n++] = Mora.of(Mora.Consonant._b   , Mora.Vowel.any ); } break;
+        case 'B' : { buffer[n++] = Mora.of(Mora.Consonant._b_j , Mora.Vowel.any ); } break;
+        case 'm' : { buffer[n++] = Mora.of(Mora.Consonant._m   , Mora.Vowel.any ); } break;
+        case 'M' : { buffer[n++] = Mora.of(Mora.Consonant._m_j , Mora.Vowel.any ); } break;
+        case 'r' : { buffer[n++] = Mora.of(Mora.Consonant._4   , Mora.Vowel.any ); } break;
+        case 'R' : { buffer[n++] = Mora.of(Mora.Consonant._4_j , Mora.Vowel.any ); } break;
+        case 's' : { buffer[n++] = Mora.of(Mora.Consonant._s   , Mora.Vowel.any ); } break;
+        case 'S' : { buffer[n++] = Mora.of(Mora.Consonant._S   , Mora.Vowel.any ); } break;
+        case 'n' : { buffer[n++] = Mora.of(Mora.Consonant._n   , Mora.Vowel.any ); } break;
+        case 'N' : { buffer[n++] = Mora.of(Mora.Consonant._J   , Mora.Vowel.any ); } break;
+        case 'h' : { buffer[n++] = Mora.of(Mora.Consonant._h   , Mora.Vowel.any ); } break;
+        case 'H' : { buffer[n++] = Mora.of(Mora.Consonant._C   , Mora.Vowel.any ); } break;
+        case 'y' : { buffer[n++] = Mora.of(Mora.Consonant._j   , Mora.Vowel.any ); } break;
+        case 'w' : { buffer[n++] = Mora.of(Mora.Consonant._w   , Mora.Vowel.any ); } break;
+        case 'v' : { buffer[n++] = Mora.of(Mora.Consonant._v   , Mora.Vowel.any ); } break;
+        case 'z' : { buffer[n++] = Mora.of(Mora.Consonant._dz  , Mora.Vowel.any ); } break;
+        case 'Z' : { buffer[n++] = Mora.of(Mora.Consonant._dZ  , Mora.Vowel.any ); } break;
+        case 'c' : { buffer[n++] = Mora.of(Mora.Consonant._ts  , Mora.Vowel.any ); } break;
+        case 'C' : { buffer[n++] = Mora.of(Mora.Consonant._tS  , Mora.Vowel.any ); } break;
+        case 'f' : { buffer[n++] = Mora.of(Mora.Consonant._pb  , Mora.Vowel.any ); } break;
+        case 'F' : { buffer[n++] = Mora.of(Mora.Consonant._pb_j, Mora.Vowel.any ); } break;
+
+        case '\'': if (n > 0) { buffer[n-1] = Mora.cloneAccent   (buffer[n-1]); } break; // 強勢を付与
+        case '^' : if (n > 0) { buffer[n-1] = Mora.cloneConsonant(buffer[n-1]); } break; // 母音を削除
+        case '-' : if (n > 0) { buffer[n-1] = Mora.cloneVowel    (buffer[n-1]); } break; // 子音を削除
+
+        case 'ァ': case 'ィ': case 'ゥ':
+        case 'ェ': case 'ォ': case 'ヮ':
+        default:
+          throw new IllegalArgumentException("対応していない発音です: " + kana + " (" + kana.charAt(i) + ")");
+        }
+        --i;
+      }
+      ++i;
+    }
+    return Arrays.copyOf(buffer, n);
+  }
+}
@@ -0,0 +1,34 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 辞書を読み込む時間。JIT の効かない起動直後の時間を見るため、一回ずつ別の JVM で測る。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class BuildBenchmark {
+  // Dictionary.Builder.build の後、全ての品詞を検索して全ての分割を読み込むまで (事前に変換した辞書を使う)
+  @Benchmark
+  public Object build() {
+    final Object dictionary = Rhyme.newDictionary();
+    return Rhyme.rank(dictionary, Rhyme.STRICT, Rhyme.toMora("あ"));
+  }
+
+  // テキストの辞書ファイルを全て読む (事前に変換した辞書が無いときや、それを作るとき)
+  @Benchmark
+  public Object[] parse() {
+    return Rhyme.parse();
+  }
+}
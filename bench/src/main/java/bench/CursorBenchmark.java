@@ -0,0 +1,93 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 問い合わせを一モーラずつ打ちながら、そのたびに最初の一頁を検索する。
+ * 毎回根から辿り直すもの (Dictionary.rank) と、前線を覚えておくもの (Dictionary.Cursor) を比べる。
+ * 脚韻では問い合わせを後ろから打つ。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CursorBenchmark {
+  @Param({ "strict", "head", "tail" })
+  public String mode;
+
+  @Param({ "とうきょうと", "a.a.o" })
+  public String query;
+
+  private Object  dictionary;
+  private int     m;
+  private short[] q;
+  private Object  cursor; // refine で使う、問い合わせを全て打ったカーソル
+
+  @Setup
+  public void setup() {
+    dictionary = Rhyme.newDictionary();
+    m = "strict".equals(mode) ? Rhyme.STRICT
+      : "head"  .equals(mode) ? Rhyme.HEAD
+      :                         Rhyme.TAIL;
+    q = Rhyme.toMora(query);
+    Rhyme.toArray(Rhyme.rank(dictionary, m, q)); // 辞書を読み込んでおく
+
+    cursor = Rhyme.cursor(dictionary, m, Rhyme.MASK_ALL);
+    for (int i = 0; i < q.length; ++i) {
+      Rhyme.push(cursor, this.mora(i));
+    }
+  }
+
+  // 打った順の i 番目のモーラ
+  private short mora(final int i) {
+    return (m == Rhyme.TAIL) ? q[q.length - 1 - i] : q[i];
+  }
+
+  // 打つたびに根から辿り直す
+  @Benchmark
+  public Object[] retype() {
+    Object[] page = null;
+    for (int length = 1; length <= q.length; ++length) {
+      final short[] prefix = (m == Rhyme.TAIL)
+        ? Arrays.copyOfRange(q, q.length - length, q.length)
+        : Arrays.copyOf(q, length);
+      page = Rhyme.page(Rhyme.rank(dictionary, m, prefix), 0, 50);
+    }
+    return page;
+  }
+
+  // 打つたびにカーソルを一段だけ進める
+  @Benchmark
+  public Object[] cursor() {
+    final Object cursor = Rhyme.cursor(dictionary, m, Rhyme.MASK_ALL);
+    Object[] page = null;
+    for (int i = 0; i < q.length; ++i) {
+      Rhyme.push(cursor, this.mora(i));
+      page = Rhyme.page(Rhyme.rank(cursor), 0, 50);
+    }
+    return page;
+  }
+
+  // 最後のモーラを打ち直す
+  @Benchmark
+  public Object[] refine() {
+    Rhyme.pop(cursor);
+    Rhyme.push(cursor, this.mora(q.length - 1));
+    return Rhyme.page(Rhyme.rank(cursor), 0, 50);
+  }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 検索結果を一頁の HTML にする時間 (一覧で描くようになる前の RhymeFinder.showResult と同じく Word.toHTML をつなげる)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlBenchmark {
+  // 結果の少ない問い合わせと多い問い合わせ
+  @Param({ "とうきょう", "....お" })
+  public String query;
+
+  private Object[] words;
+
+  @Setup
+  public void setup() {
+    words = Rhyme.toArray(Rhyme.rank(Rhyme.newDictionary(), Rhyme.TAIL, Rhyme.toMora(query)));
+  }
+
+  @Benchmark
+  public String toHTML() {
+    final StringBuilder builder = new StringBuilder();
+    builder.append("<html><body><dl>");
+    for (final Object word : words) {
+      builder.append(Rhyme.toHTML(word, 1));
+    }
+    builder.append("</dl></body></html>");
+    return builder.toString();
+  }
+}
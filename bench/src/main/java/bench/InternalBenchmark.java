@@ -0,0 +1,44 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 中間韻の検索 (Dictionary.matchInternal)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InternalBenchmark {
+  @Param({ "とうきょう", "らっぷ", "....お", "a.a." })
+  public String query;
+
+  private Object  dictionary;
+  private short[] q;
+
+  @Setup
+  public void setup() {
+    dictionary = Rhyme.newDictionary();
+    q = Rhyme.toMora(query);
+    Rhyme.toArray(Rhyme.rank(dictionary, Rhyme.INTERNAL, q));
+  }
+
+  @Benchmark
+  public Object[] internal() {
+    return Rhyme.toArray(Rhyme.rank(dictionary, Rhyme.INTERNAL, q));
+  }
+}
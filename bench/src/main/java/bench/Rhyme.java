@@ -0,0 +1,255 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * 本体のクラスを呼ぶための窓口。
+ *
+ * 本体のクラスは無名パッケージにあり、JMH のベンチマークは無名パッケージに置けないので、
+ * 名前付きのパッケージからは直接参照できない。そこで MethodHandle を static final に持って呼ぶ。
+ * JIT は定数の MethodHandle を呼び出し先に展開するので、直接呼ぶのと変わらない。
+ * 本体の型は Object として受け渡す。
+ */
+public final class Rhyme {
+  // 検索の種類 (Dictionary.STRICT など)
+  public static final int STRICT   = 0;
+  public static final int HEAD     = 1;
+  public static final int TAIL     = 2;
+  public static final int INTERNAL = 3;
+  public static final int ALIGN    = 4;
+
+  // 全ての品詞 (Dictionary.MASK_ALL)
+  public static final int MASK_ALL;
+
+  private static final MethodHandle NEW_BUILDER;
+  private static final MethodHandle CACHE;
+  private static final MethodHandle BUILD;
+  private static final MethodHandle PARSE;
+  private static final MethodHandle RANK;
+  private static final MethodHandle RANK_BOUNDED;
+  private static final MethodHandle TO_ARRAY;
+  private static final MethodHandle PAGE;
+  private static final MethodHandle TO_MORA;
+  private static final MethodHandle GET_KANA;
+  private static final MethodHandle TO_HTML;
+  private static final MethodHandle COMPARE;
+  private static final MethodHandle COMPARE_TO;
+  private static final MethodHandle CURSOR;
+  private static final MethodHandle PUSH;
+  private static final MethodHandle POP;
+  private static final MethodHandle CURSOR_RANK;
+  static {
+    try {
+      final Class<?> dictionary = Class.forName("Dictionary");
+      final Class<?> builder    = Class.forName("Dictionary$Builder");
+      final Class<?> ranking    = Class.forName("Ranking");
+      final Class<?> word       = Class.forName("Word");
+      final Class<?> cursor     = Class.forName("Dictionary$Cursor");
+
+      final Field mask = dictionary.getDeclaredField("MASK_ALL");
+      mask.setAccessible(true);
+      MASK_ALL = mask.getInt(null);
+
+      NEW_BUILDER  = Rhyme.constructor(builder);
+      CACHE        = Rhyme.method(builder   , "cache"  , int.class, int.class);
+      BUILD        = Rhyme.method(builder   , "build"  );
+      PARSE        = Rhyme.method(builder   , "parse"  );
+      RANK         = Rhyme.method(dictionary, "rank"   , int.class, short[].class);
+      RANK_BOUNDED = Rhyme.method(dictionary, "rank"   , int.class, short[].class, int.class, int.class);
+      TO_ARRAY     = Rhyme.method(ranking   , "toArray");
+      PAGE         = Rhyme.method(ranking   , "page"   , int.class, int.class);
+      TO_MORA      = Rhyme.method(word      , "toMora" , String.class);
+      GET_KANA     = Rhyme.method(word      , "getKana");
+      TO_HTML      = Rhyme.method(word      , "toHTML" , int.class);
+      COMPARE      = Rhyme.method(word      , "compare", int.class, word, word);
+      COMPARE_TO   = Rhyme.method(word      , "compareTo", word);
+      CURSOR       = Rhyme.method(dictionary, "cursor" , int.class, int.class, short[].class);
+      PUSH         = Rhyme.method(cursor    , "push"   , short.class);
+      POP          = Rhyme.method(cursor    , "pop"    );
+      CURSOR_RANK  = Rhyme.method(cursor    , "rank"   );
+    } catch (final ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private Rhyme() {
+  }
+
+  /**
+   * 検索結果をキャッシュしない辞書を作る。キャッシュに当たった時間を測らないようにする。
+   */
+  public static Object newDictionary() {
+    try {
+      return BUILD.invokeExact(CACHE.invokeExact(NEW_BUILDER.invokeExact(), 0, 0));
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  // テキストの辞書ファイルを全て読む (Dictionary.Builder.parse)
+  public static Object[] parse() {
+    try {
+      return (Object[])PARSE.invokeExact(NEW_BUILDER.invokeExact());
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static Object rank(final Object dictionary, final int mode, final short[] query) {
+    try {
+      return RANK.invokeExact(dictionary, mode, query);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static Object rank(final Object dictionary, final int mode, final short[] query,
+      final int maxDistance, final int limit) {
+    try {
+      return RANK_BOUNDED.invokeExact(dictionary, mode, query, maxDistance, limit);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static Object[] toArray(final Object ranking) {
+    try {
+      return (Object[])TO_ARRAY.invokeExact(ranking);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static Object[] page(final Object ranking, final int offset, final int limit) {
+    try {
+      return (Object[])PAGE.invokeExact(ranking, offset, limit);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static short[] toMora(final String kana) {
+    try {
+      return (short[])TO_MORA.invokeExact(kana);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static String getKana(final Object word) {
+    try {
+      return (String)GET_KANA.invokeExact(word);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static String toHTML(final Object word, final int feature) {
+    try {
+      return (String)TO_HTML.invokeExact(word, feature);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  // Word.compare (検索結果の並び順)
+  public static int compare(final int mode, final Object a, final Object b) {
+    try {
+      return (int)COMPARE.invokeExact(mode, a, b);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  // Word.compareTo (読みの順。Partition が単語を並べる順)
+  public static int compareTo(final Object a, final Object b) {
+    try {
+      return (int)COMPARE_TO.invokeExact(a, b);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  // Dictionary.cursor (除くモーラはなし)
+  public static Object cursor(final Object dictionary, final int mode, final int mask) {
+    try {
+      return CURSOR.invokeExact(dictionary, mode, mask, new short[0]);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static void push(final Object cursor, final short mora) {
+    try {
+      PUSH.invokeExact(cursor, mora);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  public static void pop(final Object cursor) {
+    try {
+      POP.invokeExact(cursor);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  // Dictionary.Cursor.rank
+  public static Object rank(final Object cursor) {
+    try {
+      return CURSOR_RANK.invokeExact(cursor);
+    } catch (final Throwable e) {
+      throw Rhyme.rethrow(e);
+    }
+  }
+
+  // 本体の型を Object に読み替えた MethodHandle
+  private static MethodHandle method(final Class<?> type, final String name, final Class<?>... parameters)
+      throws ReflectiveOperationException {
+    final Method method = type.getDeclaredMethod(name, parameters);
+    method.setAccessible(true);
+    return Rhyme.erase(MethodHandles.lookup().unreflect(method));
+  }
+
+  private static MethodHandle constructor(final Class<?> type) throws ReflectiveOperationException {
+    final Constructor<?> constructor = type.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    return Rhyme.erase(MethodHandles.lookup().unreflectConstructor(constructor));
+  }
+
+  private static MethodHandle erase(final MethodHandle handle) {
+    final MethodType type = handle.type();
+    MethodType erased = MethodType.methodType(Rhyme.erase(type.returnType()));
+    for (final Class<?> parameter : type.parameterList()) {
+      erased = erased.appendParameterTypes(Rhyme.erase(parameter));
+    }
+    return handle.asType(erased);
+  }
+
+  // 本体の型 (と、その配列) を Object (と Object[]) にする
+  private static Class<?> erase(final Class<?> type) {
+    if (type.isArray()) {
+      return type.getComponentType().isPrimitive() ? type : Object[].class;
+    }
+    if (type.isPrimitive() || type.getName().startsWith("java.")) {
+      return type;
+    }
+    return Object.class;
+  }
+
+  private static RuntimeException rethrow(final Throwable e) {
+    if (e instanceof RuntimeException) {
+      return (RuntimeException)e;
+    }
+    if (e instanceof Error) {
+      throw (Error)e;
+    }
+    return new IllegalStateException(e);
+  }
+}
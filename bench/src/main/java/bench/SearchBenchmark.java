@@ -0,0 +1,66 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 押韻・頭韻・脚韻・半韻の検索 (木を辿る部分)。
+ * 絞り込める問い合わせと、. を多く含んで広く辿る問い合わせを比べる。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+  @Param({ "strict", "head", "tail", "align" })
+  public String mode;
+
+  @Param({ "とうきょう", "らっぷ", "....お", "a.a." })
+  public String query;
+
+  private Object  dictionary;
+  private int     m;
+  private short[] q;
+
+  @Setup
+  public void setup() {
+    dictionary = Rhyme.newDictionary();
+    m = "strict".equals(mode) ? Rhyme.STRICT
+      : "head"  .equals(mode) ? Rhyme.HEAD
+      : "tail"  .equals(mode) ? Rhyme.TAIL
+      :                         Rhyme.ALIGN;
+    q = Rhyme.toMora(query);
+    Rhyme.toArray(Rhyme.rank(dictionary, m, q)); // 辞書を読み込んでおく
+  }
+
+  // 全ての結果を並べる (Dictionary.match など)
+  @Benchmark
+  public Object[] all() {
+    return Rhyme.toArray(Rhyme.rank(dictionary, m, q));
+  }
+
+  // 最初の一頁だけ (画面やサーバーで使う形)
+  @Benchmark
+  public Object[] page() {
+    return Rhyme.page(Rhyme.rank(dictionary, m, q), 0, 50);
+  }
+
+  // 距離の近い上位だけを辿る
+  @Benchmark
+  public Object[] bounded() {
+    return Rhyme.toArray(Rhyme.rank(dictionary, m, q, Integer.MAX_VALUE, 50));
+  }
+}
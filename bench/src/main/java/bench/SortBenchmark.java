@@ -0,0 +1,71 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 並べ替えの比較関数。辞書の全ての単語を順不同にしたものを並べ替える。
+ *   compare   Word.compare (距離の等しい検索結果の順)
+ *   compareTo Word.compareTo (読みの順。辞書を読み込むときの順)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+  @Param({ "strict", "tail", "internal" })
+  public String mode;
+
+  private Object[] words;
+  private int      m;
+
+  @Setup
+  public void setup() {
+    words = Rhyme.parse();
+    Collections.shuffle(Arrays.asList(words), new Random(0));
+    m = "strict".equals(mode) ? Rhyme.STRICT
+      : "tail"  .equals(mode) ? Rhyme.TAIL
+      :                         Rhyme.INTERNAL;
+  }
+
+  @Benchmark
+  public Object[] compare() {
+    final Object[] sorted = words.clone();
+    Arrays.sort(sorted, new Comparator<Object>() {
+      @Override
+      public int compare(final Object a, final Object b) {
+        return Rhyme.compare(m, a, b);
+      }
+    });
+    return sorted;
+  }
+
+  @Benchmark
+  public Object[] compareTo() {
+    final Object[] sorted = words.clone();
+    Arrays.sort(sorted, new Comparator<Object>() {
+      @Override
+      public int compare(final Object a, final Object b) {
+        return Rhyme.compareTo(a, b);
+      }
+    });
+    return sorted;
+  }
+}
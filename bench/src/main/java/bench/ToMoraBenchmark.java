@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Word.toMora の速さ。辞書の全ての読みを変換する時間と、問い合わせ一つを変換する時間を測る。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToMoraBenchmark {
+  private String[] readings;
+
+  @Setup
+  public void setup() {
+    final Object[] words = Rhyme.parse();
+    readings = new String[words.length];
+    for (int i = 0, size = words.length; i < size; ++i) {
+      readings[i] = Rhyme.getKana(words[i]);
+    }
+  }
+
+  // 辞書の全ての読み (起動時に辞書を読むときと同じ量)
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void dictionary(final Blackhole blackhole) {
+    for (final String reading : readings) {
+      blackhole.consume(Rhyme.toMora(reading));
+    }
+  }
+
+  // 問い合わせ一つ (ひらがな・カタカナ・子音と母音の指定を含む)
+  @Benchmark
+  public short[] query() {
+    return Rhyme.toMora("しゅっちょうジャーナルa.o");
+  }
+}
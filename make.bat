@@ -5,7 +5,10 @@ if exist rhyme.jar ( del rhyme.jar )
 javac -encoding utf-8 *.java
 if errorlevel 1 ( goto end )
 
-jar cvfm rhyme.jar manifest.mf splash.jpg *.class dic/*.dic
+java -cp . Snapshot dic/rhyme.snapshot
+if errorlevel 1 ( goto end )
+
+jar cvfm rhyme.jar manifest.mf splash.jpg *.class dic/*.dic dic/rhyme.snapshot
 
 :end
 del *.class